@@ -0,0 +1,111 @@
+package com.example.demo.benchmarks;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demo.entities.Appointment;
+import com.example.demo.entities.Room;
+import com.example.demo.services.RoomScheduleIndex;
+
+/**
+ * Checking one new appointment against the existing ones, in memory: the
+ * pairwise {@link Appointment#overlaps} scan the controller used to run
+ * over every appointment, and the per-room {@link RoomScheduleIndex}. The
+ * database range query is in {@link RepositoryListingBenchmark}.
+ *
+ * The appointments are spread over 50 rooms, 30 to 90 minutes long, back
+ * to back with gaps; each call checks the next of 1024 random candidates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ConflictCheckBenchmark {
+
+    private static final int ROOMS = 50;
+
+    private static final LocalDateTime START = LocalDateTime.of(2023, 1, 2, 8, 0);
+
+    @Param({"1000", "100000", "1000000"})
+    int appointments;
+
+    List<Appointment> booked;
+
+    RoomScheduleIndex index;
+
+    Appointment[] candidates;
+
+    int next;
+
+    @Setup
+    public void generate() {
+        Random random = new Random(42);
+        Room[] rooms = new Room[ROOMS];
+        LocalDateTime[] free = new LocalDateTime[ROOMS];
+        for (int room = 0; room < ROOMS; room++) {
+            rooms[room] = new Room("Room " + room);
+            rooms[room].setId(room + 1);
+            free[room] = START;
+        }
+
+        booked = new ArrayList<>(appointments);
+        index = new RoomScheduleIndex();
+        for (int i = 0; i < appointments; i++) {
+            int room = i % ROOMS;
+            LocalDateTime startsAt = free[room].plusMinutes(15L * random.nextInt(3));
+            LocalDateTime finishesAt = startsAt.plusMinutes(30L * (1 + random.nextInt(3)));
+            Appointment appointment = new Appointment(null, null, rooms[room], startsAt, finishesAt);
+            appointment.setId(i + 1);
+            booked.add(appointment);
+            index.add(appointment);
+            free[room] = finishesAt;
+        }
+
+        int slots = (int) (Duration.between(START, free[0]).toMinutes() / 5) + 1;
+        candidates = new Appointment[1024];
+        for (int i = 0; i < candidates.length; i++) {
+            LocalDateTime startsAt = START.plusMinutes(5L * random.nextInt(slots));
+            candidates[i] = new Appointment(null, null, rooms[random.nextInt(ROOMS)], startsAt, startsAt.plusMinutes(30));
+        }
+    }
+
+    private Appointment nextCandidate() {
+        next = (next + 1) & (candidates.length - 1);
+        return candidates[next];
+    }
+
+    @Benchmark
+    public boolean pairwiseScan() {
+        Appointment candidate = nextCandidate();
+        for (Appointment appointment : booked) {
+            if (candidate.overlaps(appointment)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean scheduleIndex() {
+        return index.hasConflict(nextCandidate());
+    }
+
+}
@@ -0,0 +1,83 @@
+package com.example.demo.benchmarks;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import com.example.demo.JacksonConfiguration;
+import com.example.demo.entities.Appointment;
+import com.example.demo.entities.Doctor;
+import com.example.demo.entities.Patient;
+import com.example.demo.entities.Room;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Rendering a page of appointments, with their room, patient and doctor,
+ * the way the controllers do: an ObjectMapper built with the date formats
+ * of {@link JacksonConfiguration}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+    @Param({"100", "1000"})
+    int appointments;
+
+    ObjectMapper objectMapper;
+
+    List<Appointment> page;
+
+    byte[] json;
+
+    @Setup
+    public void generate() throws JsonProcessingException {
+        Jackson2ObjectMapperBuilder builder = new Jackson2ObjectMapperBuilder();
+        new JacksonConfiguration().jackson2ObjectMapperBuilderCustomizer().customize(builder);
+        objectMapper = builder.build();
+
+        LocalDateTime day = LocalDateTime.of(2023, 4, 24, 8, 0);
+        page = new ArrayList<>(appointments);
+        for (int i = 0; i < appointments; i++) {
+            Patient patient = new Patient("Patient", "Number " + i, 20 + i % 60, "patient" + i + "@email.com");
+            patient.setId(i + 1);
+            Doctor doctor = new Doctor("Doctor", "Number " + i % 40, 30 + i % 35, "doctor" + i % 40 + "@hospital.accwe");
+            doctor.setId(i % 40 + 1);
+            LocalDateTime startsAt = day.plusDays(i / 200).plusMinutes(30L * (i % 20));
+            Appointment appointment = new Appointment(patient, doctor, new Room("Room " + i % 10), startsAt, startsAt.plusMinutes(30));
+            appointment.setId(i + 1);
+            page.add(appointment);
+        }
+        json = objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public Appointment[] deserialize() throws IOException {
+        return objectMapper.readValue(json, Appointment[].class);
+    }
+
+}
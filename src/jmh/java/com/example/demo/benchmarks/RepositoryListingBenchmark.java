@@ -0,0 +1,140 @@
+package com.example.demo.benchmarks;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.PageRequest;
+
+import com.example.demo.TechhubApplication;
+import com.example.demo.entities.Appointment;
+import com.example.demo.entities.Room;
+import com.example.demo.repositories.AppointmentFilter;
+import com.example.demo.repositories.AppointmentRepository;
+import com.example.demo.repositories.RoomRepository;
+import com.example.demo.services.AppointmentImportService;
+
+/**
+ * The appointment queries behind the list endpoints and the booking
+ * conflict check, against H2 holding the given number of appointments in
+ * 50 rooms: the first and the last keyset page of 100, a room's schedule
+ * from the middle of the data, and the room overlap query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class RepositoryListingBenchmark {
+
+    private static final int ROOMS = 50;
+
+    private static final int PAGE = 100;
+
+    private static final LocalDateTime START = LocalDateTime.of(2023, 1, 2, 8, 0);
+
+    @Param({"1000", "100000"})
+    int appointments;
+
+    ConfigurableApplicationContext context;
+
+    AppointmentRepository appointmentRepository;
+
+    long[] roomIds;
+
+    LocalDateTime middle;
+
+    Appointment lastPageCursor;
+
+    LocalDateTime[] candidates;
+
+    int next;
+
+    @Setup
+    public void start() {
+        context = new SpringApplicationBuilder(TechhubApplication.class)
+                .properties(
+                        "spring.main.web-application-type=none",
+                        "spring.datasource.url=jdbc:h2:mem:listing",
+                        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+                        "spring.jpa.properties.hibernate.order_inserts=true",
+                        "logging.level.root=warn")
+                .run();
+        appointmentRepository = context.getBean(AppointmentRepository.class);
+
+        // every room holds a day of 30 minute appointments back to back, then the next day
+        AppointmentImportService importService = context.getBean(AppointmentImportService.class);
+        List<Appointment> chunk = new ArrayList<>();
+        for (int i = 0; i < appointments; i++) {
+            int slot = i / ROOMS;
+            LocalDateTime startsAt = START.plusDays(slot / 20).plusMinutes(30L * (slot % 20));
+            chunk.add(new Appointment(null, null, new Room("Room " + i % ROOMS), startsAt, startsAt.plusMinutes(30)));
+            if (chunk.size() == 1000 || i == appointments - 1) {
+                importService.importAll(chunk);
+                chunk = new ArrayList<>();
+            }
+        }
+
+        RoomRepository roomRepository = context.getBean(RoomRepository.class);
+        roomIds = roomRepository.findAll().stream().mapToLong(Room::getId).toArray();
+
+        List<Appointment> all = appointmentRepository.findPage(new AppointmentFilter(), null, 0, appointments);
+        lastPageCursor = all.get(Math.max(0, all.size() - PAGE - 1));
+        middle = all.get(all.size() / 2).getStartsAt();
+
+        Random random = new Random(42);
+        LocalDateTime last = all.get(all.size() - 1).getStartsAt();
+        int slots = (int) (Duration.between(START, last).toMinutes() / 15) + 1;
+        candidates = new LocalDateTime[1024];
+        for (int i = 0; i < candidates.length; i++) {
+            candidates[i] = START.plusMinutes(15L * random.nextInt(slots));
+        }
+    }
+
+    @TearDown
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Appointment> firstPage() {
+        return appointmentRepository.findPage(new AppointmentFilter(), null, 0, PAGE + 1);
+    }
+
+    @Benchmark
+    public List<Appointment> lastPage() {
+        return appointmentRepository.findPage(new AppointmentFilter(),
+                lastPageCursor.getStartsAt(), lastPageCursor.getId(), PAGE + 1);
+    }
+
+    @Benchmark
+    public List<Appointment> roomSchedule() {
+        return appointmentRepository.findRoomSchedule(roomIds[0], middle, PageRequest.of(0, PAGE));
+    }
+
+    @Benchmark
+    public List<Appointment> roomOverlap() {
+        next = (next + 1) & (candidates.length - 1);
+        LocalDateTime startsAt = candidates[next];
+        return appointmentRepository.findOverlapping(roomIds[next % roomIds.length], startsAt, startsAt.plusMinutes(30));
+    }
+
+}
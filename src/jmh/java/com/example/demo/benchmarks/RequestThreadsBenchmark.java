@@ -0,0 +1,132 @@
+package com.example.demo.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.demo.TechhubApplication;
+import com.example.demo.entities.Appointment;
+import com.example.demo.entities.Room;
+import com.example.demo.services.AppointmentImportService;
+
+/**
+ * Requests per second of GET /api/appointments served by the platform
+ * worker pool versus virtual threads (spring.threads.virtual.enabled).
+ *
+ * The application runs on an embedded port against H2. An in-memory
+ * database answers in microseconds, so every SQL statement is delayed by
+ * queryLatencyMillis to stand in for the round trip to MySQL. With more
+ * concurrent clients than Tomcat workers the platform pool is the limit;
+ * the connection pool is sized so that it is not. Before JDK 21 both modes
+ * run on the platform pool and should score the same.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+@Threads(100)
+public class RequestThreadsBenchmark {
+
+    @Param({"false", "true"})
+    boolean virtualThreads;
+
+    @Param({"20"})
+    int workers;
+
+    @Param({"5"})
+    int queryLatencyMillis;
+
+    ConfigurableApplicationContext context;
+
+    URL appointments;
+
+    @Setup
+    public void start() throws IOException {
+        // keep one connection per client thread alive instead of the default 5
+        System.setProperty("http.maxConnections", "200");
+        SimulatedLatency.nanos = TimeUnit.MILLISECONDS.toNanos(queryLatencyMillis);
+
+        context = new SpringApplicationBuilder(TechhubApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:request-threads",
+                        "spring.datasource.hikari.maximum-pool-size=200",
+                        "server.tomcat.threads.max=" + workers,
+                        "spring.threads.virtual.enabled=" + virtualThreads,
+                        "spring.jpa.properties.hibernate.session_factory.statement_inspector=" + SimulatedLatency.class.getName(),
+                        "api.etag.enabled=false",
+                        "logging.level.root=warn")
+                .run();
+
+        List<Appointment> seed = new ArrayList<>();
+        LocalDateTime day = LocalDateTime.of(2023, 4, 24, 8, 0);
+        for (int i = 0; i < 500; i++) {
+            LocalDateTime startsAt = day.plusDays(i / 50).plusMinutes(30L * (i % 5));
+            seed.add(new Appointment(null, null, new Room("Room " + (i / 5) % 10), startsAt, startsAt.plusMinutes(30)));
+        }
+        context.getBean(AppointmentImportService.class).importAll(seed);
+
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        appointments = new URL("http://localhost:" + port + "/api/appointments?limit=20");
+    }
+
+    @TearDown
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public int listAppointments() throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) appointments.openConnection();
+        int status = connection.getResponseCode();
+        // read to the end so the connection goes back to the keep-alive cache
+        byte[] buffer = new byte[8192];
+        try (InputStream body = connection.getInputStream()) {
+            while (body.read(buffer) >= 0) {
+                // discard
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Delays every statement Hibernate prepares, on the request thread.
+     */
+    public static class SimulatedLatency implements StatementInspector {
+
+        static volatile long nanos;
+
+        @Override
+        public String inspect(String sql) {
+            LockSupport.parkNanos(nanos);
+            return sql;
+        }
+    }
+
+}
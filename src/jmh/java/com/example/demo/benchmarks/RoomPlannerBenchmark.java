@@ -0,0 +1,63 @@
+package com.example.demo.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.example.demo.services.RoomPlanner;
+
+/**
+ * Planning a working day of requests, 15 to 60 minutes long on a 5 minute
+ * grid, around one existing appointment per room every two hours.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RoomPlannerBenchmark {
+
+    @Param({"1000", "100000"})
+    int requests;
+
+    @Param({"50"})
+    int rooms;
+
+    long[] startsAt;
+    long[] finishesAt;
+
+    @Setup
+    public void generate() {
+        Random random = new Random(42);
+        startsAt = new long[requests];
+        finishesAt = new long[requests];
+        for (int i = 0; i < requests; i++) {
+            startsAt[i] = (8 * 60 + 5 * random.nextInt(12 * 12)) * 60L;
+            finishesAt[i] = startsAt[i] + 15 * (1 + random.nextInt(4)) * 60L;
+        }
+    }
+
+    @Benchmark
+    public int[] assign() {
+        RoomPlanner planner = new RoomPlanner(rooms);
+        for (int room = 0; room < rooms; room++) {
+            for (long hour = 8 + room % 2; hour < 20; hour += 2) {
+                planner.reserve(room, hour * 3600, hour * 3600 + 1800);
+            }
+        }
+        return planner.assign(startsAt, finishesAt);
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.example.demo.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latencies and outcomes of one kind of request. Every sample is kept, so
+ * the percentiles are exact; a run of a few minutes at a few hundred
+ * requests per second is a few hundred thousand longs.
+ */
+class LatencyRecorder {
+
+    private long[] samples = new long[1024];
+
+    private int count;
+
+    private final AtomicLong expected = new AtomicLong();
+
+    private final AtomicLong unexpected = new AtomicLong();
+
+    private final AtomicLong failed = new AtomicLong();
+
+    /**
+     * @param nanos from the scheduled send time to the end of the response
+     * @param wasExpected whether the status is one the workload allows
+     */
+    synchronized void record(long nanos, boolean wasExpected) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+        (wasExpected ? expected : unexpected).incrementAndGet();
+    }
+
+    /**
+     * An I/O error or timeout: no response to time.
+     */
+    void fail() {
+        failed.incrementAndGet();
+    }
+
+    /**
+     * @param seconds length of the measurement
+     * @return count, throughput, error counts and latency percentiles in milliseconds
+     */
+    synchronized Map<String, Object> summary(double seconds) {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("requests", count + failed.get());
+        summary.put("throughput", round(count / seconds));
+        summary.put("unexpectedStatus", unexpected.get());
+        summary.put("failed", failed.get());
+        summary.put("p50", millis(percentile(sorted, 0.50)));
+        summary.put("p99", millis(percentile(sorted, 0.99)));
+        summary.put("p999", millis(percentile(sorted, 0.999)));
+        summary.put("max", millis(sorted.length == 0 ? 0 : sorted[sorted.length - 1]));
+        return summary;
+    }
+
+    static long percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(quantile * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double millis(long nanos) {
+        return round(nanos / 1e6);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+}
@@ -0,0 +1,359 @@
+package com.example.demo.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.TechhubApplication;
+import com.example.demo.entities.Appointment;
+import com.example.demo.entities.Doctor;
+import com.example.demo.entities.Patient;
+import com.example.demo.entities.Room;
+import com.example.demo.services.DatasetGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+/**
+ * End-to-end load test: starts the application on an embedded port against
+ * H2, seeds it with the {@link DatasetGenerator}, then sends a mix of
+ * bookings, list polls, room schedule reads and cancellations over HTTP.
+ *
+ * Arrivals are open loop: requests are sent on a Poisson schedule at
+ * loadtest.rate per second whether or not earlier ones have returned, and
+ * latency is measured from the scheduled send time, so a stalled server
+ * shows up in the percentiles instead of slowing the client down. Most
+ * bookings go to the few most popular rooms, which are nearly full.
+ *
+ * Run with mvn -Ploadtest -DskipTests verify, options in loadtest.options:
+ * -Dloadtest.options="-Dloadtest.rate=400 -Dloadtest.duration=120". Spring
+ * properties pass the same way, e.g. -Dspring.datasource.url=jdbc:h2:file:./target/loadtest
+ * or -Dspring.threads.virtual.enabled=true. Results are printed and
+ * written to target/loadtest-result.json.
+ */
+public class LoadTest {
+
+    enum Operation { BOOK, LIST, SCHEDULE, CANCEL }
+
+    private static final DateTimeFormatter FORMAT = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+    /** The dataset starts here; bookings take 30 minute slots of its weekdays, 08:00 to 18:00. */
+    private static final LocalDateTime START = LocalDateTime.of(2023, 5, 1, 8, 0);
+
+    private static final int SLOTS_PER_DAY = 20;
+
+    private final double rate = Double.parseDouble(System.getProperty("loadtest.rate", "200"));
+    private final int warmupSeconds = Integer.getInteger("loadtest.warmup", 10);
+    private final int durationSeconds = Integer.getInteger("loadtest.duration", 60);
+    private final String mix = System.getProperty("loadtest.mix", "book:20,list:50,schedule:20,cancel:10");
+    private final int rooms = Integer.getInteger("loadtest.rooms", 50);
+    private final int hotRooms = Integer.getInteger("loadtest.hot-rooms", 5);
+    private final double hotShare = Double.parseDouble(System.getProperty("loadtest.hot-share", "0.8"));
+    private final int days = Integer.getInteger("loadtest.days", 30);
+    private final int doctors = Integer.getInteger("loadtest.doctors", 200);
+    private final int patients = Integer.getInteger("loadtest.patients", 5000);
+    private final long seed = Long.getLong("loadtest.seed", 42);
+    private final int maxInFlight = Integer.getInteger("loadtest.max-in-flight", 2000);
+    private final int timeoutMillis = Integer.getInteger("loadtest.timeout", 10000);
+    private final String result = System.getProperty("loadtest.result", "target/loadtest-result.json");
+
+    private final Random random = new Random(seed);
+
+    private final Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+
+    private final ConcurrentLinkedDeque<Long> cancellable = new ConcurrentLinkedDeque<>();
+
+    private final AtomicReference<String> listEtag = new AtomicReference<>();
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    private ObjectMapper objectMapper;
+
+    private long[] doctorIds;
+
+    private long[] patientIds;
+
+    private String baseUrl;
+
+    public static void main(String[] args) throws Exception {
+        new LoadTest().run();
+    }
+
+    void run() throws Exception {
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        // one keep-alive connection per concurrent request instead of the default 5
+        System.setProperty("http.maxConnections", String.valueOf(maxInFlight));
+
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(TechhubApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:loadtest",
+                        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+                        "spring.jpa.properties.hibernate.order_inserts=true",
+                        // a single instance, so the list polls can be answered with 304
+                        "api.etag.enabled=true",
+                        "logging.level.root=warn")
+                .run();
+        try {
+            objectMapper = context.getBean(ObjectMapper.class);
+            seed(context);
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort() + "/api";
+
+            System.out.printf("Warming up for %d s at %.0f requests/s%n", warmupSeconds, rate);
+            drive(warmupSeconds);
+            dropped.set(0);
+            System.out.printf("Measuring for %d s%n", durationSeconds);
+            Map<Operation, LatencyRecorder> recorders = drive(durationSeconds);
+
+            report(recorders);
+        } finally {
+            context.close();
+        }
+    }
+
+    private void seed(ConfigurableApplicationContext context) {
+        DatasetGenerator.Spec spec = new DatasetGenerator.Spec();
+        spec.setSeed(seed);
+        spec.setRooms(rooms);
+        spec.setDoctors(doctors);
+        spec.setPatients(patients);
+        spec.setDays(days);
+        spec.setStartDate(START.toLocalDate());
+        long appointments = context.getBean(DatasetGenerator.class).generate(spec);
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        doctorIds = jdbcTemplate.queryForList("select id from doctors", Long.class).stream().mapToLong(Long::longValue).toArray();
+        patientIds = jdbcTemplate.queryForList("select id from patient", Long.class).stream().mapToLong(Long::longValue).toArray();
+        List<Long> seeded = jdbcTemplate.queryForList("select id from appointment order by id", Long.class);
+        Collections.shuffle(seeded, random);
+        cancellable.addAll(seeded);
+        System.out.printf("Seeded %d rooms, %d doctors, %d patients and %d appointments%n",
+                rooms, doctors, patients, appointments);
+    }
+
+    /**
+     * Sends requests on the arrival schedule for the given time and waits
+     * for the last of them.
+     */
+    private Map<Operation, LatencyRecorder> drive(int seconds) throws InterruptedException {
+        Map<Operation, LatencyRecorder> recorders = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new LatencyRecorder());
+        }
+        ExecutorService clients = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "loadtest-client");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long begin = System.nanoTime();
+        long end = begin + TimeUnit.SECONDS.toNanos(seconds);
+        long next = begin;
+        while (true) {
+            next += (long) (-Math.log(1 - random.nextDouble()) / rate * 1e9);
+            if (next >= end) {
+                break;
+            }
+            long wait = next - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            if (inFlight.get() >= maxInFlight) {
+                dropped.incrementAndGet();
+                continue;
+            }
+            Operation operation = pick();
+            Runnable request = request(operation, recorders.get(operation), next);
+            inFlight.incrementAndGet();
+            clients.execute(request);
+        }
+
+        clients.shutdown();
+        clients.awaitTermination(timeoutMillis * 2L, TimeUnit.MILLISECONDS);
+        return recorders;
+    }
+
+    private Operation pick() {
+        int total = weights.values().stream().mapToInt(Integer::intValue).sum();
+        int choice = random.nextInt(total);
+        for (Map.Entry<Operation, Integer> weight : weights.entrySet()) {
+            choice -= weight.getValue();
+            if (choice < 0) {
+                return weight.getKey();
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    /**
+     * Draws the request's parameters on the dispatching thread, so the same
+     * seed sends the same requests in the same order.
+     */
+    private Runnable request(Operation operation, LatencyRecorder recorder, long scheduledAt) {
+        switch (operation) {
+            case BOOK:
+                byte[] body = json(newAppointment(random));
+                return () -> send(recorder, scheduledAt, "POST", baseUrl + "/appointment", body, null, 201, 406);
+            case LIST:
+                return () -> send(recorder, scheduledAt, "GET", baseUrl + "/appointments?limit=50", null, listEtag, 200, 304);
+            case SCHEDULE:
+                String path = "/rooms/" + roomName(random) + "/schedule?from=" + FORMAT.format(START).replace(" ", "%20").replace(":", "%3A");
+                return () -> send(recorder, scheduledAt, "GET", baseUrl + path, null, null, 200);
+            case CANCEL:
+                Long id = cancellable.pollFirst();
+                return () -> send(recorder, scheduledAt, "DELETE", baseUrl + "/appointments/" + (id == null ? 0 : id), null, null, 200, 404);
+            default:
+                throw new IllegalArgumentException(operation.name());
+        }
+    }
+
+    private void send(LatencyRecorder recorder, long scheduledAt, String method, String url, byte[] body,
+                      AtomicReference<String> etag, int... expected) {
+        try {
+            HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            if (etag != null && etag.get() != null) {
+                connection.setRequestProperty("If-None-Match", etag.get());
+            }
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body);
+                }
+            }
+            int status = connection.getResponseCode();
+            drain(status < 400 ? connection.getInputStream() : connection.getErrorStream());
+            long latency = System.nanoTime() - scheduledAt;
+
+            boolean wasExpected = false;
+            for (int code : expected) {
+                wasExpected |= status == code;
+            }
+            recorder.record(latency, wasExpected);
+
+            if (status == 201) {
+                String location = connection.getHeaderField("Location");
+                cancellable.addLast(Long.parseLong(location.substring(location.lastIndexOf('/') + 1)));
+            }
+            if (etag != null && connection.getHeaderField("ETag") != null) {
+                etag.set(connection.getHeaderField("ETag"));
+            }
+        } catch (IOException e) {
+            recorder.fail();
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private static void drain(InputStream body) throws IOException {
+        if (body == null) {
+            return;
+        }
+        // read to the end so the connection goes back to the keep-alive cache
+        byte[] buffer = new byte[8192];
+        try (InputStream in = body) {
+            while (in.read(buffer) >= 0) {
+                // discard
+            }
+        }
+    }
+
+    private Appointment newAppointment(Random random) {
+        int slot = random.nextInt(days * SLOTS_PER_DAY);
+        int day = slot / SLOTS_PER_DAY;
+        // five weekdays a week
+        LocalDateTime startsAt = START.plusDays(day / 5 * 7 + day % 5).plusMinutes(30L * (slot % SLOTS_PER_DAY));
+
+        Patient patient = new Patient();
+        patient.setId(patientIds[random.nextInt(patientIds.length)]);
+        Doctor doctor = new Doctor();
+        doctor.setId(doctorIds[random.nextInt(doctorIds.length)]);
+        return new Appointment(patient, doctor, new Room(roomName(random)), startsAt, startsAt.plusMinutes(30));
+    }
+
+    /**
+     * A hot room with probability hotShare, any room otherwise.
+     */
+    private String roomName(Random random) {
+        int room = random.nextDouble() < hotShare ? random.nextInt(hotRooms) : random.nextInt(rooms);
+        return "Room-" + room;
+    }
+
+    private byte[] json(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void report(Map<Operation, LatencyRecorder> recorders) throws IOException {
+        Map<String, Object> results = new LinkedHashMap<>();
+        System.out.printf("%n%-10s %9s %10s %8s %8s %9s %9s %9s %9s%n",
+                "operation", "requests", "req/s", "status!", "failed", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        for (Map.Entry<Operation, LatencyRecorder> entry : recorders.entrySet()) {
+            Map<String, Object> summary = entry.getValue().summary(durationSeconds);
+            results.put(entry.getKey().name().toLowerCase(), summary);
+            System.out.printf("%-10s %9s %10s %8s %8s %9s %9s %9s %9s%n", entry.getKey().name().toLowerCase(),
+                    summary.get("requests"), summary.get("throughput"), summary.get("unexpectedStatus"),
+                    summary.get("failed"), summary.get("p50"), summary.get("p99"), summary.get("p999"), summary.get("max"));
+        }
+        System.out.printf("dropped    %9d (more than %d requests in flight)%n", dropped.get(), maxInFlight);
+
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("rate", rate);
+        config.put("durationSeconds", durationSeconds);
+        config.put("mix", mix);
+        config.put("rooms", rooms);
+        config.put("hotRooms", hotRooms);
+        config.put("hotShare", hotShare);
+        config.put("days", days);
+        config.put("doctors", doctors);
+        config.put("patients", patients);
+        config.put("seed", seed);
+
+        Map<String, Object> output = new LinkedHashMap<>();
+        output.put("config", config);
+        output.put("results", results);
+        output.put("dropped", dropped.get());
+
+        File file = new File(result);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file, output);
+        System.out.println("Results written to " + file.getPath());
+    }
+
+}
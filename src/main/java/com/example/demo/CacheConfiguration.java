@@ -0,0 +1,92 @@
+package com.example.demo;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.UUID;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Hibernate second-level cache for rooms, doctors and patients, and for the
+ * queries marked cacheable, kept in local Ehcache heaps through JCache.
+ *
+ * Every region holds at most entity-cache.max-entries entries, which expire
+ * entity-cache.time-to-live after they were written. Hibernate evicts an
+ * entity when this instance deletes or updates it and drops cached query
+ * results when their table changes. Changes made by other instances are only
+ * seen once the entries expire, so keep the time to live short when several
+ * instances share the database.
+ *
+ * Hit, miss and eviction counts are published per region as JCache
+ * statistics MBeans (javax.cache:type=CacheStatistics).
+ *
+ * The bounds apply to full application contexts. Test slices that skip
+ * this configuration, such as @DataJpaTest, get unbounded regions.
+ */
+@Configuration
+public class CacheConfiguration {
+
+    public static final String ROOMS = "rooms";
+    public static final String DOCTORS = "doctors";
+    public static final String PATIENTS = "patients";
+
+    /** Query results are only valid as long as the table timestamps they were checked against. */
+    private static final String QUERY_RESULTS = "default-query-results-region";
+    private static final String UPDATE_TIMESTAMPS = "default-update-timestamps-region";
+
+    @Bean(destroyMethod = "close")
+    public CacheManager entityCacheManager(@Value("${entity-cache.max-entries:10000}") long maxEntries,
+                                           @Value("${entity-cache.time-to-live:10m}") Duration timeToLive) {
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(EhcacheCachingProvider.class.getName());
+        // one manager per application context, several contexts can share a JVM in tests
+        CacheManager cacheManager = provider.getCacheManager(
+                URI.create("urn:entity-cache:" + UUID.randomUUID()), new DefaultConfiguration(getClass().getClassLoader()));
+
+        for (String region : new String[] {ROOMS, DOCTORS, PATIENTS, QUERY_RESULTS}) {
+            cacheManager.createCache(region, Eh107Configuration.fromEhcacheCacheConfiguration(
+                    CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                            ResourcePoolsBuilder.heap(maxEntries))
+                            .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(timeToLive))));
+            cacheManager.enableStatistics(region, true);
+        }
+
+        // one entry per table, and it must outlive the query results that depend on it
+        cacheManager.createCache(UPDATE_TIMESTAMPS, Eh107Configuration.fromEhcacheCacheConfiguration(
+                CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                        ResourcePoolsBuilder.heap(1000))
+                        .withExpiry(ExpiryPolicyBuilder.noExpiration())));
+        cacheManager.enableStatistics(UPDATE_TIMESTAMPS, true);
+
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer entityCacheCustomizer(CacheManager entityCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, true);
+            properties.put(AvailableSettings.USE_QUERY_CACHE, true);
+            properties.put(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            properties.put(ConfigSettings.CACHE_MANAGER, entityCacheManager);
+            // a region missing above is a bug, not something to create unbounded. Only
+            // contexts that load this class get these settings: @DataJpaTest slices do not,
+            // and there Hibernate picks hibernate-jcache by itself and creates the regions
+            // on the fly with the provider's unbounded defaults (HHH90001006 in the log)
+            properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+        };
+    }
+
+}
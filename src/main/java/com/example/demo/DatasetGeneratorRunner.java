@@ -0,0 +1,68 @@
+package com.example.demo;
+
+import java.time.LocalDate;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import com.example.demo.services.DatasetGenerator;
+
+/**
+ * Command line entry to {@link DatasetGenerator}: with the generate profile
+ * the application fills the configured, empty database and exits instead
+ * of serving requests.
+ *
+ * java -jar app.jar --spring.profiles.active=generate --dataset.patients=2000000 --dataset.seed=7
+ *
+ * The dataset.* defaults are in application-generate.properties.
+ */
+@Component
+@Profile("generate")
+public class DatasetGeneratorRunner implements ApplicationRunner {
+
+    @Autowired
+    DatasetGenerator datasetGenerator;
+
+    @Value("${dataset.seed}")
+    long seed;
+
+    @Value("${dataset.rooms}")
+    int rooms;
+
+    @Value("${dataset.doctors}")
+    int doctors;
+
+    @Value("${dataset.patients}")
+    int patients;
+
+    @Value("${dataset.days}")
+    int days;
+
+    @Value("${dataset.room-skew}")
+    double roomSkew;
+
+    @Value("${dataset.start-date}")
+    String startDate;
+
+    @Value("${dataset.batch-size}")
+    int batchSize;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        DatasetGenerator.Spec spec = new DatasetGenerator.Spec();
+        spec.setSeed(seed);
+        spec.setRooms(rooms);
+        spec.setDoctors(doctors);
+        spec.setPatients(patients);
+        spec.setDays(days);
+        spec.setRoomSkew(roomSkew);
+        spec.setStartDate(LocalDate.parse(startDate));
+        spec.setBatchSize(batchSize);
+        datasetGenerator.generate(spec);
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.example.demo;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import com.example.demo.services.CollectionVersions;
+import com.example.demo.services.RequestTiming;
+
+@Configuration
+public class HibernateConfiguration {
+
+    @Bean
+    public HibernatePropertiesCustomizer changeInterceptorCustomizer(CollectionVersions collectionVersions) {
+        return properties -> properties.put(AvailableSettings.INTERCEPTOR,
+                new CollectionVersions.ChangeInterceptor(collectionVersions));
+    }
+
+    /**
+     * JDBC time and statement count for the Server-Timing header.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer statementTimingCustomizer() {
+        return properties -> properties.put(AvailableSettings.AUTO_SESSION_EVENTS_LISTENER,
+                RequestTiming.StatementListener.class.getName());
+    }
+
+}
@@ -0,0 +1,40 @@
+package com.example.demo;
+
+import java.util.Collections;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+
+/**
+ * Meters Spring Boot does not register by itself. Request timers
+ * (http.server.requests), repository timers (spring.data.repository.invocations)
+ * and the Hikari pool gauges (hikaricp.connections.*) come from Actuator;
+ * the booking meters from {@link com.example.demo.services.BookingMetrics}.
+ * Histogram buckets and the exposed endpoints are set in
+ * application.properties.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    /**
+     * The second-level cache regions are plain JCache caches, not Spring
+     * caches, so Actuator's cache metrics do not see them. Published as
+     * cache.gets, cache.puts and cache.removals tagged with the region.
+     */
+    @Bean
+    public MeterBinder entityCacheMetrics(CacheManager entityCacheManager) {
+        return registry -> {
+            for (String region : entityCacheManager.getCacheNames()) {
+                Cache<Object, Object> cache = entityCacheManager.getCache(region);
+                new JCacheMetrics<>(cache, Collections.emptyList()).bindTo(registry);
+            }
+        };
+    }
+
+}
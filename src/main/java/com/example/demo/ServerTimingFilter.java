@@ -0,0 +1,201 @@
+package com.example.demo;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.example.demo.services.RequestTiming;
+
+/**
+ * Answers requests whose X-Server-Timing header carries the
+ * api.server-timing.token with a Server-Timing response header and logs the
+ * same breakdown, see {@link RequestTiming}. Other requests pass straight
+ * through, so it can stay on in production: anonymous clients can neither
+ * read internal timings nor make the server hold their responses. Off
+ * unless api.server-timing.enabled is set, and times nothing without a token.
+ *
+ * The header has to be set before the first byte of the body, so a timed
+ * response is held in memory until the controller is done. Streaming and
+ * async responses get the header with the time up to the point they go
+ * async, and are then written through.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    public static final String REQUEST_HEADER = "X-Server-Timing";
+
+    static final String RESPONSE_HEADER = "Server-Timing";
+
+    private static final Logger log = LoggerFactory.getLogger(ServerTimingFilter.class);
+
+    @Value("${api.server-timing.enabled:false}")
+    boolean enabled;
+
+    @Value("${api.server-timing.token:}")
+    String token;
+
+    @Override
+    protected void initFilterBean() {
+        if (enabled && token.isEmpty()) {
+            log.warn("api.server-timing.enabled is set without api.server-timing.token, no request will be timed");
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || token.isEmpty() || !token.equals(request.getHeader(REQUEST_HEADER));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestTiming timing = RequestTiming.attach();
+        HeldResponse held = new HeldResponse(response);
+        try {
+            chain.doFilter(request, held);
+        } finally {
+            RequestTiming.detach();
+            timing.end(RequestTiming.Phase.SERIALIZE);
+            long total = timing.getElapsed();
+            if (!response.isCommitted()) {
+                response.setHeader(RESPONSE_HEADER, timing.header(total));
+            }
+            log.info("server_timing method={} uri={} status={} async={} {}", request.getMethod(),
+                    request.getRequestURI(), held.getStatus(), request.isAsyncStarted(), timing.logFields(total));
+            held.release();
+        }
+    }
+
+    /**
+     * Keeps the body in memory, so headers can still be set, until
+     * {@link #release()}; from then on writes go straight to the response.
+     */
+    static class HeldResponse extends HttpServletResponseWrapper {
+
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+
+        private boolean released;
+
+        private ServletOutputStream outputStream;
+
+        private PrintWriter writer;
+
+        HeldResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        void release() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            released = true;
+            if (body.size() > 0) {
+                getResponse().getOutputStream().write(body.toByteArray());
+                body.reset();
+            }
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() {
+            if (outputStream == null) {
+                outputStream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        if (released) {
+                            getResponse().getOutputStream().write(b);
+                        } else {
+                            body.write(b);
+                        }
+                    }
+
+                    @Override
+                    public void write(byte[] bytes, int offset, int length) throws IOException {
+                        if (released) {
+                            getResponse().getOutputStream().write(bytes, offset, length);
+                        } else {
+                            body.write(bytes, offset, length);
+                        }
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        if (released) {
+                            getResponse().getOutputStream().flush();
+                        }
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        if (!released) {
+                            return true;
+                        }
+                        try {
+                            return getResponse().getOutputStream().isReady();
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        try {
+                            getResponse().getOutputStream().setWriteListener(listener);
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    }
+                };
+            }
+            return outputStream;
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (released) {
+                super.flushBuffer();
+            }
+        }
+
+        @Override
+        public void resetBuffer() {
+            body.reset();
+            super.resetBuffer();
+        }
+
+        @Override
+        public void reset() {
+            body.reset();
+            super.reset();
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+package com.example.demo;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.coyote.ProtocolHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ConcurrentTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Runs every request the embedded Tomcat serves, and the streamed async
+ * responses, on a new virtual thread instead of the fixed worker pool, so a
+ * request blocked on JDBC no longer holds one of a few hundred threads.
+ *
+ * Opt-in with spring.threads.virtual.enabled=true, the property Spring Boot
+ * 3.2 reads for the same purpose. Virtual threads need JDK 21; on an older
+ * runtime the setting is ignored with a warning and the platform pool stays.
+ * A WAR deployed to an external container keeps the container's threads.
+ *
+ * Database work is still bounded by the connection pool: past
+ * spring.datasource.hikari.maximum-pool-size, requests wait for a
+ * connection instead of for a worker thread.
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfiguration implements WebMvcConfigurer {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadConfiguration.class);
+
+    /** Null when the runtime has no virtual threads. */
+    private final ExecutorService executor = newVirtualThreadPerTaskExecutor();
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualThreadRequestExecutor() {
+        return protocolHandler -> {
+            if (executor != null) {
+                protocolHandler.setExecutor(executor);
+            }
+        };
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        if (executor != null) {
+            configurer.setTaskExecutor(new ConcurrentTaskExecutor(executor));
+        }
+    }
+
+    /**
+     * Tomcat only shuts down executors it created itself.
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Looked up reflectively: the code is compiled for Java 8.
+     *
+     * @return Executors.newVirtualThreadPerTaskExecutor(), or null before JDK 21
+     */
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            // JDK 19 and 20 only have them as a preview
+            log.warn("spring.threads.virtual.enabled is set but Java {} has no virtual threads, keeping the platform thread pool",
+                    System.getProperty("java.specification.version"));
+            return null;
+        }
+    }
+
+}
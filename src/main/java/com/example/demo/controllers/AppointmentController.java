@@ -2,12 +2,29 @@ package com.example.demo.controllers;
 
 import com.example.demo.repositories.*;
 import com.example.demo.entities.*;
+import com.example.demo.services.AppointmentBookingService;
+import com.example.demo.services.AppointmentExportService;
+import com.example.demo.services.AppointmentImportService;
+import com.example.demo.services.BookingResult;
+import com.example.demo.services.CollectionVersions;
+import com.example.demo.services.ImportReport;
+import com.example.demo.services.SchedulePlan;
+import com.example.demo.services.SchedulePlanService;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -16,7 +33,12 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 
 /**
@@ -27,23 +49,83 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/api")
 public class AppointmentController {
 
+    static final int MAX_SCHEDULE_SIZE = 200;
+
+    static final String CONFLICT_REASON_HEADER = "Conflict-Reason";
+
+    /** An appointment is rendered with its room, doctor and patient. */
+    private static final CollectionVersions.Collection[] APPOINTMENT_COLLECTIONS = {
+            CollectionVersions.Collection.APPOINTMENTS, CollectionVersions.Collection.ROOMS,
+            CollectionVersions.Collection.DOCTORS, CollectionVersions.Collection.PATIENTS};
+
     @Autowired
     AppointmentRepository appointmentRepository;
 
+    @Autowired
+    AppointmentBookingService appointmentBookingService;
+
+    @Autowired
+    AppointmentExportService appointmentExportService;
+
+    @Autowired
+    AppointmentImportService appointmentImportService;
+
+    @Autowired
+    SchedulePlanService schedulePlanService;
+
+    @Autowired
+    CollectionVersions collectionVersions;
+
     /**
+     * Appointments ordered by (startsAt, id), one keyset page at a time.
+     * Optional filters: room, doctorId, patientId and a from/to window.
+     * Conditional: answers 304 from the ETag alone while nothing changed.
+     *
+     * @param filter
+     * @param after cursor from the previous page's Link header
+     * @param limit
      * @return List<Appointment>
      */
     @GetMapping("/appointments")
-    public ResponseEntity<List<Appointment>> getAllAppointments() {
-        List<Appointment> appointments = new ArrayList<>();
+    public ResponseEntity<List<Appointment>> getAllAppointments(AppointmentFilter filter,
+                                                                @RequestParam(name = "after", required = false) String after,
+                                                                @RequestParam(name = "limit", required = false) Integer limit,
+                                                                WebRequest request) {
+        if (collectionVersions.checkNotModified(request, APPOINTMENT_COLLECTIONS)) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
 
-        appointmentRepository.findAll().forEach(appointments::add);
+        String cursor = Pages.decode(after);
+        int size = Pages.limit(limit);
 
-        if (appointments.isEmpty()) {
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        LocalDateTime afterStartsAt = null;
+        long afterId = 0;
+        if (cursor != null) {
+            try {
+                int separator = cursor.indexOf('|');
+                afterStartsAt = LocalDateTime.parse(cursor.substring(0, separator));
+                afterId = Long.parseLong(cursor.substring(separator + 1));
+            } catch (IndexOutOfBoundsException | DateTimeParseException | NumberFormatException e) {
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+            }
         }
 
-        return new ResponseEntity<>(appointments, HttpStatus.OK);
+        List<Appointment> appointments = appointmentRepository.findPage(filter, afterStartsAt, afterId, size + 1);
+
+        return Pages.respond(appointments, size, appointment -> appointment.getStartsAt() + "|" + appointment.getId());
+    }
+
+    /**
+     * Every appointment as newline-delimited JSON, streamed from the database.
+     *
+     * @return StreamingResponseBody
+     */
+    @GetMapping(value = "/appointments/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportAppointments() {
+        StreamingResponseBody body = out -> appointmentExportService.exportNdjson(out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
     }
 
     /**
@@ -51,7 +133,11 @@ public class AppointmentController {
      * @return Appointment
      */
     @GetMapping("/appointments/{id}")
-    public ResponseEntity<Appointment> getAppointmentById(@PathVariable("id") long id) {
+    public ResponseEntity<Appointment> getAppointmentById(@PathVariable("id") long id, WebRequest request) {
+        if (collectionVersions.checkNotModified(request, APPOINTMENT_COLLECTIONS)) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
+
         Optional<Appointment> appointment = appointmentRepository.findById(id);
 
         if (appointment.isPresent()) {
@@ -62,23 +148,92 @@ public class AppointmentController {
     }
 
     /**
+     * The room may be omitted; the server then books the free room that
+     * fits the time range most tightly.
+     *
+     * Responds 201 with the created appointment and its Location, or 406
+     * with the conflicting appointments and a Conflict-Reason header
+     * naming what they share with the new one: room, doctor, patient. Legacy
+     * clients can pass schedule=N to receive, instead, up to N appointments
+     * of the booked room from the start of that day on (at most 200).
+     *
      * @param newAppointment
-     * @return List<Appointment>
+     * @param schedule
+     * @return Appointment, or List<Appointment> when schedule is given or on conflict
      */
     @PostMapping("/appointment")
-    public ResponseEntity<List<Appointment>> createAppointment(@RequestBody Appointment newAppointment) {
-        if (isInvalidTimeRange(newAppointment)) {
+    public ResponseEntity<Object> createAppointment(@RequestBody Appointment newAppointment,
+                                                    @RequestParam(name = "schedule", required = false) Integer schedule) {
+        BookingResult result = appointmentBookingService.book(newAppointment);
+
+        if (result.getStatus() == BookingResult.Status.INVALID) {
             return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
         }
 
-        if (hasOverlap(newAppointment)) {
-            return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
+        if (result.getStatus() == BookingResult.Status.CONFLICT) {
+            String reasons = result.getReasons().stream()
+                    .map(reason -> reason.name().toLowerCase())
+                    .collect(Collectors.joining(", "));
+            return ResponseEntity.status(HttpStatus.NOT_ACCEPTABLE)
+                    .header(CONFLICT_REASON_HEADER, reasons)
+                    .body(result.getConflicts());
         }
 
-        appointmentRepository.save(newAppointment);
-        List<Appointment> appointments = appointmentRepository.findAll();
+        Appointment created = result.getAppointment();
+        URI location = ServletUriComponentsBuilder.fromCurrentContextPath()
+                .path("/api/appointments/{id}")
+                .buildAndExpand(created.getId())
+                .toUri();
 
-        return new ResponseEntity<>(appointments, HttpStatus.OK);
+        if (schedule == null) {
+            return ResponseEntity.created(location).body(created);
+        }
+
+        int size = Math.max(1, Math.min(schedule, MAX_SCHEDULE_SIZE));
+        List<Appointment> roomSchedule = appointmentRepository.findRoomSchedule(
+                created.getRoom().getId(),
+                created.getStartsAt().toLocalDate().atStartOfDay(),
+                PageRequest.of(0, size));
+
+        return ResponseEntity.created(location).body(roomSchedule);
+    }
+
+    /**
+     * Books a JSON array of appointments. The body is parsed as it arrives,
+     * so it can be larger than the heap. Each item is accepted or rejected
+     * on its own; the report lists the outcome of every item in order.
+     *
+     * @param body
+     * @return ImportReport
+     */
+    @PostMapping(value = "/appointments/bulk", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<ImportReport> importAppointments(InputStream body) throws IOException {
+        try {
+            return new ResponseEntity<>(appointmentImportService.importJson(body), HttpStatus.OK);
+        } catch (JsonProcessingException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Malformed appointment array", e);
+        }
+    }
+
+    /**
+     * Proposes a room for each requested appointment, using as few rooms as
+     * it can around the existing bookings. With commit=true the plan is also
+     * booked, unless it needs rooms that do not exist yet: then it is
+     * returned with 406 and nothing is booked.
+     *
+     * @param requests
+     * @param commit
+     * @return SchedulePlan
+     */
+    @PostMapping("/appointments/plan")
+    public ResponseEntity<SchedulePlan> planAppointments(@RequestBody List<Appointment> requests,
+                                                         @RequestParam(name = "commit", defaultValue = "false") boolean commit) {
+        if (!commit) {
+            return new ResponseEntity<>(schedulePlanService.plan(requests), HttpStatus.OK);
+        }
+
+        SchedulePlan plan = schedulePlanService.commit(requests);
+        return new ResponseEntity<>(plan, plan.getCommitted() != null ? HttpStatus.OK : HttpStatus.NOT_ACCEPTABLE);
     }
 
     /**
@@ -94,7 +249,7 @@ public class AppointmentController {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
 
-        appointmentRepository.deleteById(id);
+        appointmentBookingService.cancel(appointment.get());
 
         return new ResponseEntity<>(HttpStatus.OK);
 
@@ -105,30 +260,8 @@ public class AppointmentController {
      */
     @DeleteMapping("/appointments")
     public ResponseEntity<HttpStatus> deleteAllAppointments() {
-        appointmentRepository.deleteAll();
+        appointmentBookingService.cancelAll();
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
-    /**
-     * @param appointment
-     * @return boolean
-     */
-    private boolean isInvalidTimeRange(Appointment appointment) {
-        return appointment.getStartsAt().equals(appointment.getFinishesAt());
-    }
-
-    /**
-     * @param newAppointment
-     * @return boolean
-     */
-    private boolean hasOverlap(Appointment newAppointment) {
-        List<Appointment> existingAppointments = appointmentRepository.findAll();
-        for (Appointment existingAppointment : existingAppointments) {
-            if (newAppointment.overlaps(existingAppointment)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
 }
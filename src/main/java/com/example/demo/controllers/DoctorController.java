@@ -2,11 +2,16 @@ package com.example.demo.controllers;
 
 import com.example.demo.repositories.*;
 import com.example.demo.entities.Doctor;
+import com.example.demo.services.CollectionVersions;
+import com.example.demo.services.FreeSlotService;
 
-import java.util.ArrayList;
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -16,7 +21,9 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 
 @RestController
@@ -26,21 +33,34 @@ public class DoctorController {
     @Autowired
     DoctorRepository doctorRepository;
 
-    @GetMapping("/doctors")
-    public ResponseEntity<List<Doctor>> getAllDoctors(){
-        List<Doctor> doctors = new ArrayList<>();
+    @Autowired
+    FreeSlotService freeSlotService;
 
-        doctorRepository.findAll().forEach(doctors::add);
+    @Autowired
+    CollectionVersions collectionVersions;
 
-        if (doctors.isEmpty()){
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    @GetMapping("/doctors")
+    public ResponseEntity<List<Doctor>> getAllDoctors(@RequestParam(name = "after", required = false) String after,
+                                                      @RequestParam(name = "limit", required = false) Integer limit,
+                                                      WebRequest request){
+        if (collectionVersions.checkNotModified(request, CollectionVersions.Collection.DOCTORS)) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
         }
 
-        return new ResponseEntity<>(doctors, HttpStatus.OK);
+        int size = Pages.limit(limit);
+
+        List<Doctor> doctors = doctorRepository.findByIdGreaterThanOrderByIdAsc(
+                Pages.decodeId(after), PageRequest.of(0, size + 1));
+
+        return Pages.respond(doctors, size, doctor -> String.valueOf(doctor.getId()));
     }
 
     @GetMapping("/doctors/{id}")
-    public ResponseEntity<Doctor> getDoctorById(@PathVariable("id") long id){
+    public ResponseEntity<Doctor> getDoctorById(@PathVariable("id") long id, WebRequest request){
+        if (collectionVersions.checkNotModified(request, CollectionVersions.Collection.DOCTORS)) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
+
         Optional<Doctor> doctor = doctorRepository.findById(id);
         if (! doctor.isPresent()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
@@ -49,6 +69,40 @@ public class DoctorController {
         return new ResponseEntity<>(doctor.get(),HttpStatus.OK);
     }
 
+    /**
+     * Earliest free gaps of at least duration minutes in [from, to).
+     * The window defaults to one week and may span at most a year.
+     *
+     * @param id
+     * @param duration in minutes
+     * @param from
+     * @param to
+     * @param limit at most 100, 10 by default
+     * @return List<TimeRange>
+     */
+    @GetMapping("/doctors/{id}/free-slots")
+    public ResponseEntity<List<TimeRange>> getDoctorFreeSlots(@PathVariable("id") long id,
+                                                              @RequestParam("duration") int duration,
+                                                              @RequestParam("from") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime from,
+                                                              @RequestParam(name = "to", required = false) @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime to,
+                                                              @RequestParam(name = "limit", required = false) Integer limit){
+        LocalDateTime until = to == null ? from.plusWeeks(1) : to;
+        if (duration <= 0 || !from.isBefore(until) || until.isAfter(from.plusYears(1))){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        if (!doctorRepository.findById(id).isPresent()){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        int size = limit == null ? 10 : Math.max(1, Math.min(limit, 100));
+        List<TimeRange> slots = freeSlotService.findDoctorFreeSlots(id, Duration.ofMinutes(duration), from, until, size);
+
+        if (slots.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        return new ResponseEntity<>(slots, HttpStatus.OK);
+    }
+
     @PostMapping("/doctor")
     public ResponseEntity<Doctor> createDoctor(@RequestBody Doctor doc){
         Doctor d = new Doctor(doc.getFirstName(), doc.getLastName(), doc.getAge(), doc.getEmail());
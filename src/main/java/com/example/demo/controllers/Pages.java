@@ -0,0 +1,104 @@
+package com.example.demo.controllers;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+
+/**
+ * Keyset pagination helpers shared by the list endpoints.
+ *
+ * A list endpoint fetches limit + 1 rows after the cursor. If the extra row
+ * comes back there is a next page: the extra row is dropped and a
+ * Link: <...>; rel="next" header carries the cursor of the last row returned.
+ * Cursors are opaque URL-safe strings.
+ */
+final class Pages {
+
+    static final int DEFAULT_LIMIT = 100;
+    static final int MAX_LIMIT = 1000;
+
+    private Pages() {
+    }
+
+    /**
+     * @param requested
+     * @return the page size to use, between 1 and MAX_LIMIT
+     */
+    static int limit(Integer requested) {
+        if (requested == null) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.max(1, Math.min(requested, MAX_LIMIT));
+    }
+
+    /**
+     * @param rows up to limit + 1 rows, in cursor order
+     * @param limit
+     * @param cursorOf
+     * @return ResponseEntity<List<T>>
+     */
+    static <T> ResponseEntity<List<T>> respond(List<T> rows, int limit, Function<T, String> cursorOf) {
+        if (rows.isEmpty()) {
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        if (rows.size() <= limit) {
+            return new ResponseEntity<>(rows, HttpStatus.OK);
+        }
+
+        List<T> page = rows.subList(0, limit);
+        String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                .replaceQueryParam("after", encode(cursorOf.apply(page.get(limit - 1))))
+                .replaceQueryParam("limit", limit)
+                .build()
+                .toUriString();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        return new ResponseEntity<>(page, headers, HttpStatus.OK);
+    }
+
+    /**
+     * @param cursor as sent back by the client, may be null
+     * @return the raw key, or null for the first page
+     */
+    static String decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    /**
+     * @param cursor as sent back by the client, may be null
+     * @return the last id of the previous page, or 0 for the first page
+     */
+    static long decodeId(String cursor) {
+        String key = decode(cursor);
+        if (key == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(key);
+        } catch (NumberFormatException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    private static String encode(String key) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+}
@@ -3,11 +3,12 @@ package com.example.demo.controllers;
 
 import com.example.demo.repositories.*;
 import com.example.demo.entities.Patient;
+import com.example.demo.services.CollectionVersions;
 
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,7 +18,9 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 
 @RestController
@@ -27,21 +30,31 @@ public class PatientController {
     @Autowired
     PatientRepository patientRepository;
 
+    @Autowired
+    CollectionVersions collectionVersions;
+
     @GetMapping("/patients")
-    public ResponseEntity<List<Patient>> getAllPatients(){
-        List<Patient> patients = new ArrayList<>();
+    public ResponseEntity<List<Patient>> getAllPatients(@RequestParam(name = "after", required = false) String after,
+                                                        @RequestParam(name = "limit", required = false) Integer limit,
+                                                        WebRequest request){
+        if (collectionVersions.checkNotModified(request, CollectionVersions.Collection.PATIENTS)) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
 
-        patientRepository.findAll().forEach(patients::add);
+        int size = Pages.limit(limit);
 
-        if (patients.isEmpty()){
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
-        }
+        List<Patient> patients = patientRepository.findByIdGreaterThanOrderByIdAsc(
+                Pages.decodeId(after), PageRequest.of(0, size + 1));
 
-        return new ResponseEntity<>(patients, HttpStatus.OK);
+        return Pages.respond(patients, size, patient -> String.valueOf(patient.getId()));
     }
 
     @GetMapping("/patients/{id}")
-    public ResponseEntity<Patient> getPatientById(@PathVariable("id") long id){
+    public ResponseEntity<Patient> getPatientById(@PathVariable("id") long id, WebRequest request){
+        if (collectionVersions.checkNotModified(request, CollectionVersions.Collection.PATIENTS)) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
+
         Optional<Patient> patient = patientRepository.findById(id);
         if (! patient.isPresent()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
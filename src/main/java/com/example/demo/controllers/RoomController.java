@@ -3,11 +3,24 @@ package com.example.demo.controllers;
 
 import com.example.demo.repositories.*;
 import com.example.demo.entities.Room;
-
-import java.util.ArrayList;
+import com.example.demo.services.AvailabilityMatrix;
+import com.example.demo.services.CollectionVersions;
+import com.example.demo.services.FreeSlotService;
+import com.example.demo.services.RoomOccupancy;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,7 +30,9 @@ import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 
 
 @RestController
@@ -27,21 +42,38 @@ public class RoomController {
     @Autowired
     RoomRepository roomRepository;
 
-    @GetMapping("/rooms")
-    public ResponseEntity<List<Room>> getAllRooms(){
-        List<Room> rooms = new ArrayList<>();
+    @Autowired
+    FreeSlotService freeSlotService;
 
-        roomRepository.findAll().forEach(rooms::add);
+    @Autowired
+    RoomOccupancy roomOccupancy;
 
-        if (rooms.isEmpty()){
-            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+    @Autowired
+    CollectionVersions collectionVersions;
+
+    @GetMapping("/rooms")
+    public ResponseEntity<List<Room>> getAllRooms(@RequestParam(name = "after", required = false) String after,
+                                                  @RequestParam(name = "limit", required = false) Integer limit,
+                                                  WebRequest request){
+        if (collectionVersions.checkNotModified(request, CollectionVersions.Collection.ROOMS)) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
         }
 
-        return new ResponseEntity<>(rooms, HttpStatus.OK);
+        String afterName = Pages.decode(after);
+        int size = Pages.limit(limit);
+
+        List<Room> rooms = roomRepository.findByRoomNameGreaterThanOrderByRoomNameAsc(
+                afterName == null ? "" : afterName, PageRequest.of(0, size + 1));
+
+        return Pages.respond(rooms, size, Room::getRoomName);
     }
 
     @GetMapping("/rooms/{roomName}")
-    public ResponseEntity<Room> getRoomByRoomName(@PathVariable("roomName") String roomName){
+    public ResponseEntity<Room> getRoomByRoomName(@PathVariable("roomName") String roomName, WebRequest request){
+        if (collectionVersions.checkNotModified(request, CollectionVersions.Collection.ROOMS)) {
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        }
+
         Optional<Room> room = roomRepository.findByRoomName(roomName);
         if (!room.isPresent()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
@@ -49,10 +81,104 @@ public class RoomController {
         return new ResponseEntity<>(room.get(), HttpStatus.OK);
     }
 
+    /**
+     * Earliest free gaps of at least duration minutes in [from, to).
+     * The window defaults to one week and may span at most a year.
+     *
+     * @param roomName
+     * @param duration in minutes
+     * @param from
+     * @param to
+     * @param limit at most 100, 10 by default
+     * @return List<TimeRange>
+     */
+    @GetMapping("/rooms/{roomName}/free-slots")
+    public ResponseEntity<List<TimeRange>> getRoomFreeSlots(@PathVariable("roomName") String roomName,
+                                                            @RequestParam("duration") int duration,
+                                                            @RequestParam("from") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime from,
+                                                            @RequestParam(name = "to", required = false) @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime to,
+                                                            @RequestParam(name = "limit", required = false) Integer limit){
+        LocalDateTime until = to == null ? from.plusWeeks(1) : to;
+        if (duration <= 0 || !from.isBefore(until) || until.isAfter(from.plusYears(1))){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        Optional<Room> room = roomRepository.findByRoomName(roomName);
+        if (!room.isPresent()){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        int size = limit == null ? 10 : Math.max(1, Math.min(limit, 100));
+        List<TimeRange> slots = freeSlotService.findRoomFreeSlots(room.get().getId(), Duration.ofMinutes(duration), from, until, size);
+
+        if (slots.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        return new ResponseEntity<>(slots, HttpStatus.OK);
+    }
+
+    /**
+     * Which rooms are free in each slot of a day.
+     *
+     * @param day
+     * @param slot slot length in minutes, 30 by default
+     * @param from time of the first slot, 00:00 by default
+     * @param to end of the last slot, the end of the day by default
+     * @return AvailabilityMatrix
+     */
+    @GetMapping("/availability")
+    public ResponseEntity<AvailabilityMatrix> getAvailability(@RequestParam("day") @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate day,
+                                                              @RequestParam(name = "slot", required = false) Integer slot,
+                                                              @RequestParam(name = "from", required = false) @DateTimeFormat(pattern = "HH:mm") LocalTime from,
+                                                              @RequestParam(name = "to", required = false) @DateTimeFormat(pattern = "HH:mm") LocalTime to){
+        int slotMinutes = slot == null ? 30 : slot;
+        int fromMinute = from == null ? 0 : from.getHour() * 60 + from.getMinute();
+        int toMinute = to == null ? RoomOccupancy.MINUTES_PER_DAY : to.getHour() * 60 + to.getMinute();
+        if (slotMinutes < 5 || slotMinutes > RoomOccupancy.MINUTES_PER_DAY || fromMinute >= toMinute){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        List<String> roomNames = roomRepository.findAll(Sort.by("roomName")).stream()
+                .map(Room::getRoomName)
+                .collect(Collectors.toList());
+
+        return new ResponseEntity<>(roomOccupancy.getAvailability(roomNames, day, fromMinute, toMinute, slotMinutes), HttpStatus.OK);
+    }
+
+    /**
+     * Rooms with no appointment in [from, to), which may span up to 31 days.
+     *
+     * @param from
+     * @param to
+     * @return List<Room>
+     */
+    @GetMapping("/availability/free-rooms")
+    public ResponseEntity<List<Room>> getFreeRooms(@RequestParam("from") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime from,
+                                                   @RequestParam("to") @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime to){
+        if (!from.isBefore(to) || to.isAfter(from.plusDays(31))){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        List<Room> rooms = roomRepository.findAll(Sort.by("roomName"));
+        Set<String> free = new HashSet<>(roomOccupancy.findFreeRooms(
+                rooms.stream().map(Room::getRoomName).collect(Collectors.toList()), from, to));
+        rooms.removeIf(room -> !free.contains(room.getRoomName()));
+
+        if (rooms.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+        return new ResponseEntity<>(rooms, HttpStatus.OK);
+    }
+
+    /**
+     * Creating a room that already exists returns the stored one.
+     *
+     * @param room
+     * @return Room
+     */
     @PostMapping("/room")
     public ResponseEntity<Room> createRoom(@RequestBody Room room){
-        Room tmp = new Room(room.getRoomName());
-        roomRepository.save(tmp);
+        Room tmp = roomRepository.findByRoomName(room.getRoomName())
+                .orElseGet(() -> roomRepository.save(new Room(room.getRoomName())));
         return new ResponseEntity<>(tmp, HttpStatus.CREATED);
     }
 
@@ -63,12 +189,14 @@ public class RoomController {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
         roomRepository.deleteByRoomName(roomName);
+        roomOccupancy.removeRoom(roomName);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
     @DeleteMapping("/rooms")
     public ResponseEntity<HttpStatus> deleteAllRooms(){
         roomRepository.deleteAll();
+        roomOccupancy.clear();
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
@@ -0,0 +1,189 @@
+package com.example.demo.controllers;
+
+import com.example.demo.entities.*;
+import com.example.demo.services.CollectionVersions;
+import com.example.demo.services.ScheduleReadService;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+
+/**
+ * Read endpoints for clients that watch schedules: long polls and a stream
+ * of change events. A waiting request is a servlet async request, so it
+ * holds a connection but no thread; the reads run on the
+ * {@link ScheduleReadService} pool once there is something to send.
+ */
+@RestController
+@RequestMapping("/api")
+public class ScheduleController {
+
+    static final int MAX_WAIT_SECONDS = 60;
+
+    static final String CHANGE_EVENT = "appointments";
+
+    /** A schedule is rendered with its rooms, doctors and patients. */
+    private static final CollectionVersions.Collection[] SCHEDULE_COLLECTIONS = {
+            CollectionVersions.Collection.APPOINTMENTS, CollectionVersions.Collection.ROOMS,
+            CollectionVersions.Collection.DOCTORS, CollectionVersions.Collection.PATIENTS};
+
+    @Autowired
+    ScheduleReadService scheduleReadService;
+
+    @Autowired
+    CollectionVersions collectionVersions;
+
+    /**
+     * The room's appointments that finish after from (the start of today by
+     * default), in start order, with an ETag. Long poll: with wait=N and an
+     * If-None-Match equal to the current ETag, the response is held until
+     * the schedule changes, or for N seconds (at most 60) and then 304.
+     *
+     * @param roomName
+     * @param from
+     * @param limit at most 1000, 100 by default
+     * @param wait seconds
+     * @param ifNoneMatch
+     * @return List<Appointment>
+     */
+    @GetMapping("/rooms/{roomName}/schedule")
+    public DeferredResult<ResponseEntity<List<Appointment>>> getRoomSchedule(@PathVariable("roomName") String roomName,
+                                                                             @RequestParam(name = "from", required = false) @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy") LocalDateTime from,
+                                                                             @RequestParam(name = "limit", required = false) Integer limit,
+                                                                             @RequestParam(name = "wait", defaultValue = "0") int wait,
+                                                                             @RequestHeader(name = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        LocalDateTime since = from == null ? LocalDate.now().atStartOfDay() : from;
+        int size = Pages.limit(limit);
+        int waitSeconds = Math.max(0, Math.min(wait, MAX_WAIT_SECONDS));
+
+        CompletableFuture<Object> change = collectionVersions.nextChange(SCHEDULE_COLLECTIONS);
+        String etag = collectionVersions.etag(SCHEDULE_COLLECTIONS);
+
+        if (!collectionVersions.isEnabled() || !etag.equals(ifNoneMatch)) {
+            change.cancel(false);
+            DeferredResult<ResponseEntity<List<Appointment>>> result = new DeferredResult<>();
+            respond(result, roomName, since, size);
+            return result;
+        }
+
+        ResponseEntity<List<Appointment>> notModified = ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        if (waitSeconds == 0) {
+            change.cancel(false);
+            DeferredResult<ResponseEntity<List<Appointment>>> result = new DeferredResult<>();
+            result.setResult(notModified);
+            return result;
+        }
+
+        DeferredResult<ResponseEntity<List<Appointment>>> result =
+                new DeferredResult<>(TimeUnit.SECONDS.toMillis(waitSeconds), notModified);
+        // stop waiting for a change once the poll is over, however it ended
+        result.onTimeout(() -> change.cancel(false));
+        result.onCompletion(() -> change.cancel(false));
+        change.thenRunAsync(() -> {
+            // a poll that already timed out must not cost a read
+            if (!result.isSetOrExpired()) {
+                respond(result, roomName, since, size);
+            }
+        }, scheduleReadService.getExecutor());
+        return result;
+    }
+
+    /**
+     * Server-sent events: an "appointments" event, carrying the new ETag of
+     * the schedules, right away and then after every committed change to
+     * appointments, rooms, doctors or patients. The stream ends with
+     * spring.mvc.async.request-timeout; clients reconnect.
+     *
+     * @return SseEmitter
+     */
+    @GetMapping(value = "/appointments/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges() {
+        SseEmitter emitter = new SseEmitter();
+        AtomicBoolean open = new AtomicBoolean(true);
+        AtomicReference<CompletableFuture<Object>> change = new AtomicReference<>();
+        Runnable close = () -> {
+            open.set(false);
+            CompletableFuture<Object> waiting = change.get();
+            if (waiting != null) {
+                waiting.cancel(false);
+            }
+        };
+        emitter.onCompletion(close);
+        emitter.onTimeout(close);
+        emitter.onError(error -> close.run());
+        sendChanges(emitter, open, change, null);
+        return emitter;
+    }
+
+    private void respond(DeferredResult<ResponseEntity<List<Appointment>>> result,
+                         String roomName, LocalDateTime from, int size) {
+        // read before the data, so the ETag never claims more than the body shows
+        String etag = collectionVersions.etag(SCHEDULE_COLLECTIONS);
+        scheduleReadService.findRoom(roomName)
+                .thenCompose(room -> room.isPresent()
+                        ? scheduleReadService.findRoomSchedule(room.get(), from, size)
+                                .thenApply(schedule -> withEtag(ResponseEntity.ok(), etag).body(schedule))
+                        : CompletableFuture.completedFuture(new ResponseEntity<List<Appointment>>(HttpStatus.NOT_FOUND)))
+                .whenComplete((response, error) -> {
+                    if (error != null) {
+                        result.setErrorResult(error);
+                    } else {
+                        result.setResult(response);
+                    }
+                });
+    }
+
+    private ResponseEntity.BodyBuilder withEtag(ResponseEntity.BodyBuilder response, String etag) {
+        return collectionVersions.isEnabled() ? response.eTag(etag) : response;
+    }
+
+    /**
+     * Sends the current ETag unless the client has it already, then waits
+     * for the next change without a thread. The change being waited for is
+     * kept in waiting, so closing the stream can cancel it.
+     */
+    private void sendChanges(SseEmitter emitter, AtomicBoolean open,
+                             AtomicReference<CompletableFuture<Object>> waiting, String lastSent) {
+        CompletableFuture<Object> change = collectionVersions.nextChange(SCHEDULE_COLLECTIONS);
+        waiting.set(change);
+        // checked after publishing the change, so a close in between still cancels it
+        if (!open.get()) {
+            change.cancel(false);
+            return;
+        }
+        String etag = collectionVersions.etag(SCHEDULE_COLLECTIONS);
+        if (!etag.equals(lastSent)) {
+            try {
+                emitter.send(SseEmitter.event().name(CHANGE_EVENT).id(etag).data(etag));
+            } catch (IOException | IllegalStateException e) {
+                // the client went away or the stream timed out
+                open.set(false);
+                change.cancel(false);
+                return;
+            }
+        }
+        change.thenRunAsync(() -> sendChanges(emitter, open, waiting, etag), scheduleReadService.getExecutor());
+    }
+
+}
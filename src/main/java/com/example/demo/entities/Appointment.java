@@ -6,26 +6,47 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.*;
+
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
+
 import com.fasterxml.jackson.annotation.JsonFormat;
 
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_appointment_room_time", columnList = "room_id, startsAt, finishesAt"),
+    @Index(name = "idx_appointment_doctor_time", columnList = "doctor_id, startsAt, finishesAt"),
+    @Index(name = "idx_appointment_patient_time", columnList = "patient_id, startsAt, finishesAt"),
+    @Index(name = "idx_appointment_starts_at", columnList = "startsAt, id")
+})
 public class Appointment {
 
+    /**
+     * Handed out 50 at a time from a per-entity sequence, kept in a table so
+     * it works the same on MySQL and H2; see db/id-sequences.sql. Inserts
+     * need no round trip per row and can be sent as JDBC batches.
+     */
     @Id
-    @GeneratedValue(strategy=GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "appointment_seq")
+    @GenericGenerator(name = "appointment_seq", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "appointment_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo"),
+            @Parameter(name = "force_table_use", value = "true")
+    })
     private long id;
 
 
-    @ManyToOne(cascade = CascadeType.ALL)
+    @ManyToOne(fetch = FetchType.LAZY, cascade = {CascadeType.PERSIST, CascadeType.MERGE})
     @JoinColumn(name = "patient_id", referencedColumnName = "id")
     private Patient patient;
 
-    @ManyToOne(cascade = CascadeType.ALL)
+    @ManyToOne(fetch = FetchType.LAZY, cascade = {CascadeType.PERSIST, CascadeType.MERGE})
     @JoinColumn(name = "doctor_id", referencedColumnName = "id")
     private Doctor doctor;
 
-    @ManyToOne(cascade = CascadeType.ALL)
-    @JoinColumn(name = "room_id", referencedColumnName = "roomName")
+    @ManyToOne(fetch = FetchType.LAZY, cascade = {CascadeType.PERSIST, CascadeType.MERGE})
+    @JoinColumn(name = "room_id", referencedColumnName = "id")
     private Room room;
 
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
@@ -89,26 +110,22 @@ public class Appointment {
         this.room = room;
     }
     
-    public boolean overlaps( Appointment appointment){
-        /// True when:
-        // Case 1: A.starts == B.starts
-        // Case 2: A.finishes == B.finishes 
-        // Case 3: A.starts < B.finishes && B.finishes < A.finishes
-        // Case 4: B.starts < A.starts && A.finishes < B.finishes
-        if (appointment.getRoom().getRoomName().equals(this.getRoom().getRoomName())){ 
-            if (this.getStartsAt().equals(appointment.getStartsAt()) || 
-                    appointment.getFinishesAt().equals(this.getFinishesAt())){
-                return true;
-                    }
-            if (appointment.getFinishesAt().isAfter(this.getStartsAt()) && appointment.getFinishesAt().isBefore(this.getFinishesAt())){
-                return true;
-            }
-            if ( appointment.getStartsAt().isAfter(this.getStartsAt()) && appointment.getStartsAt().isBefore(this.getFinishesAt())){
-                return true;
-            }
-        }
-        
-        return false;
+    /**
+     * Whether both are in the same room and their half-open ranges
+     * [startsAt, finishesAt) intersect. Rooms are compared by id; one that
+     * is not stored yet (id 0) by name.
+     *
+     * @param appointment
+     * @return boolean
+     */
+    public boolean overlaps(Appointment appointment){
+        Room other = appointment.getRoom();
+        boolean sameRoom = other.getId() != 0 && this.room.getId() != 0
+                ? other.getId() == this.room.getId()
+                : other.getRoomName().equals(this.room.getRoomName());
+        return sameRoom
+                && this.startsAt.isBefore(appointment.getFinishesAt())
+                && appointment.getStartsAt().isBefore(this.finishesAt);
     }
 
 }
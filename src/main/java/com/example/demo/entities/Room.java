@@ -1,12 +1,43 @@
 package com.example.demo.entities;
 
+import javax.persistence.Cacheable;
+import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.Parameter;
+
+import com.example.demo.CacheConfiguration;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheConfiguration.ROOMS)
 public class Room {
 
+    /**
+     * Internal key that appointments reference, so their room column and
+     * indexes hold a bigint instead of the name. Clients keep addressing
+     * rooms by name and never see it.
+     */
     @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "room_seq")
+    @GenericGenerator(name = "room_seq", strategy = "org.hibernate.id.enhanced.SequenceStyleGenerator", parameters = {
+            @Parameter(name = "sequence_name", value = "room_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled-lo"),
+            @Parameter(name = "force_table_use", value = "true")
+    })
+    private long id;
+
+    @NaturalId
+    @Column(nullable = false)
     private String roomName;
 
     public Room(){
@@ -18,6 +49,15 @@ public class Room {
         this.roomName = roomName;
     }
 
+    @JsonIgnore
+    public long getId(){
+        return this.id;
+    }
+
+    @JsonIgnore
+    public void setId(long id){
+        this.id = id;
+    }
 
     public String getRoomName(){
         return this.roomName;
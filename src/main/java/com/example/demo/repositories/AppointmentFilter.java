@@ -0,0 +1,57 @@
+package com.example.demo.repositories;
+
+import java.time.LocalDateTime;
+
+import org.springframework.format.annotation.DateTimeFormat;
+
+/**
+ * Optional criteria for listing appointments. Unset fields match everything;
+ * from/to select the appointments that intersect [from, to).
+ */
+public class AppointmentFilter {
+
+    private String room;
+    private Long doctorId;
+    private Long patientId;
+
+    @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime from;
+
+    @DateTimeFormat(pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime to;
+
+    public String getRoom(){
+        return this.room;
+    }
+    public void setRoom(String room){
+        this.room = room;
+    }
+
+    public Long getDoctorId(){
+        return this.doctorId;
+    }
+    public void setDoctorId(Long doctorId){
+        this.doctorId = doctorId;
+    }
+
+    public Long getPatientId(){
+        return this.patientId;
+    }
+    public void setPatientId(Long patientId){
+        this.patientId = patientId;
+    }
+
+    public LocalDateTime getFrom(){
+        return this.from;
+    }
+    public void setFrom(LocalDateTime from){
+        this.from = from;
+    }
+
+    public LocalDateTime getTo(){
+        return this.to;
+    }
+    public void setTo(LocalDateTime to){
+        this.to = to;
+    }
+}
@@ -1,14 +1,146 @@
 
 package com.example.demo.repositories;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
 import com.example.demo.entities.Appointment;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 
-public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
+/**
+ * Appointment's room, patient and doctor are lazy. Every method whose result
+ * is serialized loads them in the same select through an entity graph, so
+ * reading N appointments costs one statement instead of up to 3N + 1.
+ */
+public interface AppointmentRepository extends JpaRepository<Appointment, Long>, AppointmentRepositoryCustom {
+    @EntityGraph(attributePaths = {"room", "patient", "doctor"})
     List<Appointment> findAll();
+
+    @EntityGraph(attributePaths = {"room", "patient", "doctor"})
+    Optional<Appointment> findById(Long id);
+
+    @EntityGraph(attributePaths = {"room", "patient", "doctor"})
+    List<Appointment> findAllById(Iterable<Long> ids);
+
+    /**
+     * Appointments in the room that intersect [startsAt, finishesAt).
+     * Served by the (room_id, startsAt, finishesAt) index on Appointment.
+     */
+    @EntityGraph(attributePaths = {"room", "patient", "doctor"})
+    @Query("select a from Appointment a where a.room.id = :roomId"
+            + " and a.startsAt < :finishesAt and a.finishesAt > :startsAt")
+    List<Appointment> findOverlapping(@Param("roomId") long roomId,
+                                      @Param("startsAt") LocalDateTime startsAt,
+                                      @Param("finishesAt") LocalDateTime finishesAt);
+
+    /**
+     * The doctor's appointments that intersect [startsAt, finishesAt).
+     * Served by the (doctor_id, startsAt, finishesAt) index on Appointment.
+     */
+    @EntityGraph(attributePaths = {"room", "patient", "doctor"})
+    @Query("select a from Appointment a where a.doctor.id = :doctorId"
+            + " and a.startsAt < :finishesAt and a.finishesAt > :startsAt")
+    List<Appointment> findDoctorOverlapping(@Param("doctorId") long doctorId,
+                                            @Param("startsAt") LocalDateTime startsAt,
+                                            @Param("finishesAt") LocalDateTime finishesAt);
+
+    /**
+     * The patient's appointments that intersect [startsAt, finishesAt).
+     * Served by the (patient_id, startsAt, finishesAt) index on Appointment.
+     */
+    @EntityGraph(attributePaths = {"room", "patient", "doctor"})
+    @Query("select a from Appointment a where a.patient.id = :patientId"
+            + " and a.startsAt < :finishesAt and a.finishesAt > :startsAt")
+    List<Appointment> findPatientOverlapping(@Param("patientId") long patientId,
+                                             @Param("startsAt") LocalDateTime startsAt,
+                                             @Param("finishesAt") LocalDateTime finishesAt);
+
+    /**
+     * The room's appointments that finish after :from, in start order.
+     */
+    @EntityGraph(attributePaths = {"room", "patient", "doctor"})
+    @Query("select a from Appointment a where a.room.id = :roomId"
+            + " and a.finishesAt > :from order by a.startsAt")
+    List<Appointment> findRoomSchedule(@Param("roomId") long roomId,
+                                       @Param("from") LocalDateTime from,
+                                       Pageable pageable);
+
+    /**
+     * Time ranges of the room's appointments that start in [from, to), in
+     * start order, read through the (room_id, startsAt, finishesAt) index.
+     * Must be consumed inside a transaction and closed afterwards.
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.FETCH_SIZE, value = "100"))
+    @Query("select new com.example.demo.repositories.TimeRange(a.startsAt, a.finishesAt) from Appointment a"
+            + " where a.room.id = :roomId and a.startsAt >= :from and a.startsAt < :to order by a.startsAt")
+    Stream<TimeRange> streamRoomRanges(@Param("roomId") long roomId,
+                                       @Param("from") LocalDateTime from,
+                                       @Param("to") LocalDateTime to);
+
+    /**
+     * Time ranges of the room's appointments that start before :before,
+     * latest first.
+     */
+    @Query("select new com.example.demo.repositories.TimeRange(a.startsAt, a.finishesAt) from Appointment a"
+            + " where a.room.id = :roomId and a.startsAt < :before order by a.startsAt desc")
+    List<TimeRange> findRoomRangesBefore(@Param("roomId") long roomId,
+                                         @Param("before") LocalDateTime before,
+                                         Pageable pageable);
+
+    /**
+     * Time ranges of the doctor's appointments that start in [from, to), in
+     * start order, read through the (doctor_id, startsAt, finishesAt) index.
+     * Must be consumed inside a transaction and closed afterwards.
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.annotations.QueryHints.FETCH_SIZE, value = "100"))
+    @Query("select new com.example.demo.repositories.TimeRange(a.startsAt, a.finishesAt) from Appointment a"
+            + " where a.doctor.id = :doctorId and a.startsAt >= :from and a.startsAt < :to order by a.startsAt")
+    Stream<TimeRange> streamDoctorRanges(@Param("doctorId") long doctorId,
+                                         @Param("from") LocalDateTime from,
+                                         @Param("to") LocalDateTime to);
+
+    /**
+     * Time ranges of the doctor's appointments that start before :before,
+     * latest first.
+     */
+    @Query("select new com.example.demo.repositories.TimeRange(a.startsAt, a.finishesAt) from Appointment a"
+            + " where a.doctor.id = :doctorId and a.startsAt < :before order by a.startsAt desc")
+    List<TimeRange> findDoctorRangesBefore(@Param("doctorId") long doctorId,
+                                           @Param("before") LocalDateTime before,
+                                           Pageable pageable);
+
+    /**
+     * Booked ranges of all rooms that start in [from, to), read through the
+     * (startsAt, id) index.
+     */
+    @Query("select new com.example.demo.repositories.RoomTimeRange(a.room.roomName, a.startsAt, a.finishesAt)"
+            + " from Appointment a where a.startsAt >= :from and a.startsAt < :to")
+    List<RoomTimeRange> findRoomRangesStartingBetween(@Param("from") LocalDateTime from,
+                                                      @Param("to") LocalDateTime to);
+
+    /**
+     * Every appointment with its room, patient and doctor, in (startsAt, id)
+     * order, read through a JDBC cursor. Must be consumed inside a
+     * transaction and closed afterwards.
+     */
+    @QueryHints({
+        @QueryHint(name = org.hibernate.annotations.QueryHints.FETCH_SIZE, value = "500"),
+        @QueryHint(name = org.hibernate.annotations.QueryHints.READ_ONLY, value = "true")
+    })
+    @Query("select a from Appointment a left join fetch a.room left join fetch a.patient"
+            + " left join fetch a.doctor order by a.startsAt, a.id")
+    Stream<Appointment> streamAll();
+
     Appointment save(Appointment appointment);
     void delete(Appointment appointment);
 }
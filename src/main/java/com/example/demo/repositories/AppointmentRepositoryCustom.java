@@ -0,0 +1,30 @@
+package com.example.demo.repositories;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.example.demo.entities.Appointment;
+
+public interface AppointmentRepositoryCustom {
+
+    /**
+     * Keyset page ordered by (startsAt, id).
+     *
+     * @param filter
+     * @param afterStartsAt startsAt of the last row of the previous page, null for the first page
+     * @param afterId id of the last row of the previous page
+     * @param limit
+     * @return List<Appointment>
+     */
+    List<Appointment> findPage(AppointmentFilter filter, LocalDateTime afterStartsAt, long afterId, int limit);
+
+    /**
+     * For each room, the last appointment that starts before at if it is
+     * still running at at. Rooms never hold overlapping appointments, so no
+     * other appointment of the room can be running then.
+     *
+     * @param at
+     * @return List<RoomTimeRange>
+     */
+    List<RoomTimeRange> findRoomRangesRunningAt(LocalDateTime at);
+}
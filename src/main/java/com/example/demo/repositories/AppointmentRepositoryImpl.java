@@ -0,0 +1,103 @@
+package com.example.demo.repositories;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+
+import org.hibernate.query.NativeQuery;
+import org.hibernate.type.LocalDateTimeType;
+import org.hibernate.type.StringType;
+
+import com.example.demo.entities.Appointment;
+import com.example.demo.entities.Room;
+
+class AppointmentRepositoryImpl implements AppointmentRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<Appointment> findPage(AppointmentFilter filter, LocalDateTime afterStartsAt, long afterId, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Appointment> query = cb.createQuery(Appointment.class);
+        Root<Appointment> appointment = query.from(Appointment.class);
+        appointment.fetch("room", JoinType.LEFT);
+        appointment.fetch("patient", JoinType.LEFT);
+        appointment.fetch("doctor", JoinType.LEFT);
+        Path<LocalDateTime> startsAt = appointment.get("startsAt");
+        Path<Long> id = appointment.get("id");
+
+        List<Predicate> where = new ArrayList<>();
+        if (filter.getRoom() != null) {
+            where.add(cb.equal(appointment.get("room").get("roomName"), filter.getRoom()));
+        }
+        if (filter.getDoctorId() != null) {
+            where.add(cb.equal(appointment.get("doctor").get("id"), filter.getDoctorId()));
+        }
+        if (filter.getPatientId() != null) {
+            where.add(cb.equal(appointment.get("patient").get("id"), filter.getPatientId()));
+        }
+        if (filter.getFrom() != null) {
+            where.add(cb.greaterThan(appointment.get("finishesAt"), filter.getFrom()));
+        }
+        if (filter.getTo() != null) {
+            where.add(cb.lessThan(startsAt, filter.getTo()));
+        }
+        if (afterStartsAt != null) {
+            where.add(cb.or(
+                    cb.greaterThan(startsAt, afterStartsAt),
+                    cb.and(cb.equal(startsAt, afterStartsAt), cb.greaterThan(id, afterId))));
+        }
+
+        query.select(appointment)
+                .where(where.toArray(new Predicate[0]))
+                .orderBy(cb.asc(startsAt), cb.asc(id));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    /**
+     * Native SQL, as JPQL has no derived tables. The grouped subquery finds
+     * the latest start before at per room on idx_appointment_room_time:
+     * on MySQL a loose index scan, one seek per room; databases without
+     * one (H2) read the index entries that start before at. Each room it
+     * returns is then one lookup on the same index. Nothing runs per
+     * appointment row.
+     */
+    @Override
+    public List<RoomTimeRange> findRoomRangesRunningAt(LocalDateTime at) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = entityManager.createNativeQuery(
+                "select r.room_name, a.starts_at, a.finishes_at from appointment a"
+                        + " join (select room_id, max(starts_at) as latest from appointment"
+                        + " where starts_at < :at group by room_id) l"
+                        + " on a.room_id = l.room_id and a.starts_at = l.latest"
+                        + " join room r on r.id = a.room_id"
+                        + " where a.finishes_at > :at")
+                .setParameter("at", at)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(Appointment.class)
+                .addSynchronizedEntityClass(Room.class)
+                .addScalar("room_name", StringType.INSTANCE)
+                .addScalar("starts_at", LocalDateTimeType.INSTANCE)
+                .addScalar("finishes_at", LocalDateTimeType.INSTANCE)
+                .getResultList();
+
+        List<RoomTimeRange> ranges = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            ranges.add(new RoomTimeRange((String) row[0], (LocalDateTime) row[1], (LocalDateTime) row[2]));
+        }
+        return ranges;
+    }
+}
@@ -1,13 +1,29 @@
 package com.example.demo.repositories;
 
 import java.util.List;
+import java.util.Optional;
+
+import javax.persistence.LockModeType;
 
 import com.example.demo.entities.Doctor;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface DoctorRepository extends JpaRepository<Doctor, Long> {
     List<Doctor> findAll();
+    List<Doctor> findByIdGreaterThanOrderByIdAsc(long id, Pageable pageable);
     Doctor save(Doctor doc);
     void delete(Doctor doc);
+
+    /**
+     * SELECT ... FOR UPDATE on the doctor row, held until the surrounding
+     * transaction ends.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select d from Doctor d where d.id = :id")
+    Optional<Doctor> lockById(@Param("id") long id);
 }
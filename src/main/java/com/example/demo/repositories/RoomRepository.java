@@ -1,17 +1,47 @@
 
 package com.example.demo.repositories;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
+import javax.persistence.LockModeType;
+
 import com.example.demo.entities.Room;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface RoomRepository extends JpaRepository<Room, Long> {
     List<Room> findAll();
+    List<Room> findByRoomNameGreaterThanOrderByRoomNameAsc(String roomName, Pageable pageable);
+
+    /**
+     * Not a cacheable query: the query cache only sees this instance's
+     * writes, so a cached miss would hide a room another instance created
+     * and booking would try to insert it a second time.
+     */
     Optional<Room> findByRoomName(String roomName);
+
+    List<Room> findByRoomNameIn(Collection<String> roomNames);
     Room save(Room room);
     void delete(Room room);
+
+    /**
+     * Loads and removes the room, so it is also evicted from the entity cache.
+     */
+    @Transactional
     void deleteByRoomName(String roomName);
+
+    /**
+     * SELECT ... FOR UPDATE on the room row, held until the surrounding
+     * transaction ends.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from Room r where r.roomName = :roomName")
+    Optional<Room> lockByRoomName(@Param("roomName") String roomName);
 }
@@ -0,0 +1,21 @@
+package com.example.demo.repositories;
+
+import java.time.LocalDateTime;
+
+/**
+ * The booked range of an appointment together with its room.
+ */
+public class RoomTimeRange extends TimeRange {
+
+    private final String roomName;
+
+    public RoomTimeRange(String roomName, LocalDateTime startsAt, LocalDateTime finishesAt){
+        super(startsAt, finishesAt);
+        this.roomName = roomName;
+    }
+
+    public String getRoomName(){
+        return this.roomName;
+    }
+
+}
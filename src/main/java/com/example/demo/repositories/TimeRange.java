@@ -0,0 +1,32 @@
+package com.example.demo.repositories;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * A [startsAt, finishesAt) range: either the booked part of an appointment,
+ * read without loading the entity, or a free gap between appointments.
+ */
+public class TimeRange {
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private final LocalDateTime startsAt;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private final LocalDateTime finishesAt;
+
+    public TimeRange(LocalDateTime startsAt, LocalDateTime finishesAt){
+        this.startsAt = startsAt;
+        this.finishesAt = finishesAt;
+    }
+
+    public LocalDateTime getStartsAt(){
+        return this.startsAt;
+    }
+
+    public LocalDateTime getFinishesAt(){
+        return this.finishesAt;
+    }
+
+}
@@ -0,0 +1,443 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+
+/**
+ * Books appointments so that no two appointments of the same room overlap,
+ * and, unless booking.conflicts.doctor / booking.conflicts.patient is set to
+ * ignore, no doctor or patient is booked twice at the same time.
+ *
+ * The overlap checks and the insert run in one transaction while holding
+ * locks striped by room, doctor and patient: bookings that share any of
+ * them are serialized, the rest (almost always) proceed in parallel.
+ *
+ * With booking.lock-mode=database the transaction also takes a
+ * SELECT ... FOR UPDATE on the room, doctor and patient rows, so instances
+ * sharing the database serialize those bookings too. The local lock is kept in
+ * that mode so threads of one instance queue in memory instead of holding
+ * pooled connections while they wait on the row lock.
+ */
+@Service
+public class AppointmentBookingService {
+
+    private static final int LOCK_STRIPES = 64;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired(required = false)
+    RoomScheduleIndex roomScheduleIndex;
+
+    @Autowired
+    RoomOccupancy roomOccupancy;
+
+    @Autowired
+    BookingMetrics bookingMetrics;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Value("${booking.lock-mode:local}")
+    String lockMode;
+
+    @Value("${booking.conflicts.doctor:reject}")
+    String doctorPolicy;
+
+    @Value("${booking.conflicts.patient:reject}")
+    String patientPolicy;
+
+    private final Lock[] locks = new Lock[LOCK_STRIPES];
+
+    public AppointmentBookingService() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Books the appointment into its room or, when the room is omitted,
+     * into the free room that fits the time range most tightly.
+     *
+     * @param appointment
+     * @return BookingResult
+     */
+    public BookingResult book(Appointment appointment) {
+        if (isInvalidRange(appointment)) {
+            BookingResult invalid = BookingResult.invalid(appointment);
+            bookingMetrics.outcome(invalid);
+            return invalid;
+        }
+
+        BookingResult result = hasRoom(appointment)
+                ? inBookingTransaction(Collections.singleton(appointment), () -> bookInTransaction(appointment), AppointmentBookingService::booked)
+                : bookAnyRoom(appointment);
+        bookingMetrics.outcome(result);
+        return result;
+    }
+
+    /**
+     * Tries the rooms the occupancy bitmaps show as free, best fit first.
+     * Each try is a regular booking under the room's lock, so the database
+     * has the final word; a try only fails if another booking took the room
+     * since the bitmaps were read, and then the next candidate is tried.
+     * A doctor or patient conflict ends the search, since no room can solve it.
+     *
+     * @param appointment
+     * @return BookingResult
+     */
+    private BookingResult bookAnyRoom(Appointment appointment) {
+        List<String> roomNames = roomRepository.findAll(Sort.by("roomName")).stream()
+                .map(Room::getRoomName)
+                .collect(Collectors.toList());
+
+        BookingResult result = BookingResult.conflict(appointment, new ArrayList<>(), EnumSet.of(BookingResult.Reason.ROOM));
+        for (String roomName : roomOccupancy.rankFreeRooms(roomNames, appointment.getStartsAt(), appointment.getFinishesAt())) {
+            appointment.setRoom(new Room(roomName));
+            result = inBookingTransaction(Collections.singleton(appointment), () -> bookInTransaction(appointment), AppointmentBookingService::booked);
+            if (result.isAccepted() || !result.getReasons().equals(EnumSet.of(BookingResult.Reason.ROOM))) {
+                break;
+            }
+        }
+        if (!result.isAccepted()) {
+            appointment.setRoom(null);
+        }
+        return result;
+    }
+
+    /**
+     * Deletes under the room's lock, so no booking of the room can commit
+     * between the delete and the index update.
+     *
+     * @param appointment with its room
+     */
+    public void cancel(Appointment appointment) {
+        SortedSet<Integer> stripes = new TreeSet<>();
+        stripes.add(stripeOf("room:" + appointment.getRoom().getRoomName()));
+        List<Lock> held = new ArrayList<>();
+        try {
+            lock(stripes, held);
+            appointmentRepository.deleteById(appointment.getId());
+            roomOccupancy.remove(appointment);
+            if (roomScheduleIndex != null) {
+                roomScheduleIndex.remove(appointment);
+            }
+        } finally {
+            unlock(held);
+        }
+    }
+
+    /**
+     * Holds every stripe, so a booking cannot commit after the delete and
+     * then be dropped by the index clear.
+     */
+    public void cancelAll() {
+        SortedSet<Integer> stripes = new TreeSet<>();
+        for (int stripe = 0; stripe < LOCK_STRIPES; stripe++) {
+            stripes.add(stripe);
+        }
+        List<Lock> held = new ArrayList<>();
+        try {
+            lock(stripes, held);
+            appointmentRepository.deleteAll();
+            roomOccupancy.clear();
+            if (roomScheduleIndex != null) {
+                roomScheduleIndex.clear();
+            }
+        } finally {
+            unlock(held);
+        }
+    }
+
+    /**
+     * Runs work in one transaction while holding the locks of every room,
+     * doctor and patient the appointments are checked against: the local
+     * stripes, and in database lock mode their rows too. Locks are always
+     * taken in the same order, so callers that lock several keys cannot
+     * deadlock each other.
+     *
+     * The appointments work stored go into the occupancy bitmaps and the
+     * room index after the commit but before the locks are released: with
+     * the index enabled it is the only room check, so the next booking of
+     * the room must not get the lock before it sees this one.
+     *
+     * @param appointments
+     * @param work
+     * @param booked the appointments stored by work, given what it returned
+     * @return whatever work returns
+     */
+    <T> T inBookingTransaction(Collection<Appointment> appointments, Supplier<T> work,
+                               Function<T, Collection<Appointment>> booked) {
+        SortedSet<String> rooms = new TreeSet<>();
+        SortedSet<Long> doctors = new TreeSet<>();
+        SortedSet<Long> patients = new TreeSet<>();
+        for (Appointment appointment : appointments) {
+            rooms.add(appointment.getRoom().getRoomName());
+            Long doctorId = checkedDoctorId(appointment);
+            if (doctorId != null) {
+                doctors.add(doctorId);
+            }
+            Long patientId = checkedPatientId(appointment);
+            if (patientId != null) {
+                patients.add(patientId);
+            }
+        }
+
+        SortedSet<Integer> stripes = new TreeSet<>();
+        rooms.forEach(roomName -> stripes.add(stripeOf("room:" + roomName)));
+        doctors.forEach(doctorId -> stripes.add(stripeOf("doctor:" + doctorId)));
+        patients.forEach(patientId -> stripes.add(stripeOf("patient:" + patientId)));
+
+        List<Lock> held = new ArrayList<>();
+        try {
+            long waitStart = System.nanoTime();
+            lock(stripes, held);
+            bookingMetrics.lockWait(System.nanoTime() - waitStart);
+            if (isDatabaseLockMode()) {
+                rooms.forEach(this::ensureRoomExists);
+            }
+            T result = new TransactionTemplate(transactionManager).execute(status -> {
+                if (isDatabaseLockMode()) {
+                    rooms.forEach(roomRepository::lockByRoomName);
+                    doctors.forEach(doctorRepository::lockById);
+                    patients.forEach(patientRepository::lockById);
+                }
+                return work.get();
+            });
+            for (Appointment appointment : booked.apply(result)) {
+                roomOccupancy.add(appointment);
+                if (roomScheduleIndex != null) {
+                    roomScheduleIndex.add(appointment);
+                }
+            }
+            return result;
+        } finally {
+            unlock(held);
+        }
+    }
+
+    /**
+     * Takes the stripes in ascending order, adding each to held as soon as
+     * it is locked, so the caller's finally releases exactly those.
+     */
+    private void lock(SortedSet<Integer> stripes, List<Lock> held) {
+        for (int stripe : stripes) {
+            locks[stripe].lock();
+            held.add(locks[stripe]);
+        }
+    }
+
+    private void unlock(List<Lock> held) {
+        for (int i = held.size() - 1; i >= 0; i--) {
+            held.get(i).unlock();
+        }
+    }
+
+    private static Collection<Appointment> booked(BookingResult result) {
+        return result.isAccepted() ? Collections.singleton(result.getAppointment()) : Collections.emptyList();
+    }
+
+    private BookingResult bookInTransaction(Appointment appointment) {
+        attachReferences(appointment);
+
+        List<Appointment> conflicts = new ArrayList<>();
+        Set<BookingResult.Reason> reasons = EnumSet.noneOf(BookingResult.Reason.class);
+
+        addConflicts(conflicts, reasons, BookingResult.Reason.ROOM, findRoomConflicts(appointment));
+
+        Long doctorId = checkedDoctorId(appointment);
+        if (doctorId != null) {
+            addConflicts(conflicts, reasons, BookingResult.Reason.DOCTOR, bookingMetrics.conflictCheck("doctor", "database",
+                    () -> appointmentRepository.findDoctorOverlapping(doctorId, appointment.getStartsAt(), appointment.getFinishesAt())));
+        }
+
+        Long patientId = checkedPatientId(appointment);
+        if (patientId != null) {
+            addConflicts(conflicts, reasons, BookingResult.Reason.PATIENT, bookingMetrics.conflictCheck("patient", "database",
+                    () -> appointmentRepository.findPatientOverlapping(patientId, appointment.getStartsAt(), appointment.getFinishesAt())));
+        }
+
+        if (!reasons.isEmpty()) {
+            return BookingResult.conflict(appointment, conflicts, reasons);
+        }
+
+        appointmentRepository.save(appointment);
+        return BookingResult.accepted(appointment);
+    }
+
+    /**
+     * Uses the in-memory index when it is enabled (single node only),
+     * otherwise asks the database for the overlapping range. A room that
+     * is not stored yet has nothing booked in it.
+     *
+     * @param appointment with its references attached
+     * @return List<Appointment> already booked in the same room and time range
+     */
+    private List<Appointment> findRoomConflicts(Appointment appointment) {
+        long roomId = appointment.getRoom().getId();
+        if (roomId == 0) {
+            return new ArrayList<>();
+        }
+        if (roomScheduleIndex != null) {
+            return bookingMetrics.conflictCheck("room", "index", () -> {
+                List<Long> ids = roomScheduleIndex.findConflicts(roomId,
+                        appointment.getStartsAt(), appointment.getFinishesAt());
+                return ids.isEmpty() ? new ArrayList<>() : appointmentRepository.findAllById(ids);
+            });
+        }
+        return bookingMetrics.conflictCheck("room", "database", () -> appointmentRepository.findOverlapping(roomId,
+                appointment.getStartsAt(), appointment.getFinishesAt()));
+    }
+
+    /**
+     * Adds found to conflicts, skipping appointments an earlier dimension
+     * already reported.
+     */
+    private void addConflicts(List<Appointment> conflicts, Set<BookingResult.Reason> reasons,
+                              BookingResult.Reason reason, List<Appointment> found) {
+        if (found.isEmpty()) {
+            return;
+        }
+        reasons.add(reason);
+        Set<Long> reported = conflicts.stream().map(Appointment::getId).collect(Collectors.toSet());
+        for (Appointment conflict : found) {
+            if (!reported.contains(conflict.getId())) {
+                conflicts.add(conflict);
+            }
+        }
+    }
+
+    /**
+     * @param appointment
+     * @return the doctor id to check for double bookings, or null when the
+     * policy ignores doctors or the doctor is new
+     */
+    Long checkedDoctorId(Appointment appointment) {
+        Doctor doctor = appointment.getDoctor();
+        if (!isRejected(doctorPolicy) || doctor == null || doctor.getId() == 0) {
+            return null;
+        }
+        return doctor.getId();
+    }
+
+    /**
+     * @param appointment
+     * @return the patient id to check for double bookings, or null when the
+     * policy ignores patients or the patient is new
+     */
+    Long checkedPatientId(Appointment appointment) {
+        Patient patient = appointment.getPatient();
+        if (!isRejected(patientPolicy) || patient == null || patient.getId() == 0) {
+            return null;
+        }
+        return patient.getId();
+    }
+
+    private boolean isRejected(String policy) {
+        return !"ignore".equalsIgnoreCase(policy);
+    }
+
+    /**
+     * Replaces the room, patient and doctor sent by the client with the
+     * stored ones when they already exist, so saving the appointment does
+     * not try to insert them a second time.
+     *
+     * @param appointment
+     */
+    private void attachReferences(Appointment appointment) {
+        String roomName = appointment.getRoom().getRoomName();
+        appointment.setRoom(roomRepository.findByRoomName(roomName).orElseGet(() -> new Room(roomName)));
+
+        Patient patient = appointment.getPatient();
+        if (patient != null && patient.getId() != 0) {
+            patientRepository.findById(patient.getId()).ifPresent(appointment::setPatient);
+        }
+
+        Doctor doctor = appointment.getDoctor();
+        if (doctor != null && doctor.getId() != 0) {
+            doctorRepository.findById(doctor.getId()).ifPresent(appointment::setDoctor);
+        }
+    }
+
+    /**
+     * A row lock needs a row: create the room in its own transaction before
+     * booking. If another instance creates it at the same time the insert
+     * fails on the unique room name and the row is there either way.
+     *
+     * @param roomName
+     */
+    private void ensureRoomExists(String roomName) {
+        if (roomRepository.findByRoomName(roomName).isPresent()) {
+            return;
+        }
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        try {
+            template.executeWithoutResult(status -> roomRepository.saveAndFlush(new Room(roomName)));
+        } catch (DataIntegrityViolationException e) {
+            // created concurrently by another instance
+        }
+    }
+
+    private boolean isDatabaseLockMode() {
+        return "database".equalsIgnoreCase(lockMode);
+    }
+
+    /**
+     * @param appointment
+     * @return boolean
+     */
+    boolean isInvalid(Appointment appointment) {
+        return !hasRoom(appointment) || isInvalidRange(appointment);
+    }
+
+    private boolean hasRoom(Appointment appointment) {
+        return appointment.getRoom() != null && appointment.getRoom().getRoomName() != null;
+    }
+
+    private boolean isInvalidRange(Appointment appointment) {
+        return appointment.getStartsAt() == null
+                || appointment.getFinishesAt() == null
+                || !appointment.getStartsAt().isBefore(appointment.getFinishesAt());
+    }
+
+    private int stripeOf(String key) {
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        return hash & (LOCK_STRIPES - 1);
+    }
+
+}
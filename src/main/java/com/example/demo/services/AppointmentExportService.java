@@ -0,0 +1,74 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+
+/**
+ * Writes every appointment as newline-delimited JSON while reading them
+ * from a database cursor. The persistence context is cleared every
+ * CHUNK_SIZE rows, so memory use does not grow with the number of rows.
+ */
+@Service
+public class AppointmentExportService {
+
+    static final int CHUNK_SIZE = 500;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    /**
+     * @param out left open
+     * @return number of appointments written
+     */
+    @Transactional(readOnly = true)
+    public long exportNdjson(OutputStream out) throws IOException {
+        ObjectWriter writer = objectMapper.writerFor(Appointment.class)
+                .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        long written = 0;
+
+        try (Stream<Appointment> appointments = appointmentRepository.streamAll();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.setRootValueSeparator(null);
+
+            Iterator<Appointment> iterator = appointments.iterator();
+            while (iterator.hasNext()) {
+                writer.writeValue(generator, iterator.next());
+                generator.writeRaw('\n');
+                written++;
+
+                if (written % CHUNK_SIZE == 0) {
+                    entityManager.clear();
+                    generator.flush();
+                }
+            }
+        }
+
+        return written;
+    }
+
+}
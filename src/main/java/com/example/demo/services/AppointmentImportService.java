@@ -0,0 +1,380 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.exc.MismatchedInputException;
+
+
+/**
+ * Imports a JSON array of appointments in chunks.
+ *
+ * The array is read one element at a time. Every CHUNK_SIZE elements the
+ * chunk is sorted by start time and swept once: an item is rejected if its
+ * room, doctor or patient (as checked by {@link AppointmentBookingService})
+ * is taken by an earlier item of the chunk or by a stored appointment. The
+ * stored appointments come from one range query per room, doctor and patient
+ * over the chunk's time span. The remaining items are inserted in one
+ * transaction, which Hibernate sends as JDBC batches. Appointments from earlier chunks are
+ * already stored, so the range queries also catch conflicts across chunks.
+ */
+@Service
+public class AppointmentImportService {
+
+    static final int CHUNK_SIZE = 1000;
+
+    @Autowired
+    AppointmentBookingService appointmentBookingService;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    BookingMetrics bookingMetrics;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    /**
+     * An element that is not an object fails the import with the chunk it
+     * is in; earlier chunks are already committed.
+     *
+     * @param json a JSON array of appointments
+     * @return ImportReport
+     */
+    public ImportReport importJson(InputStream json) throws IOException {
+        ImportReport report = new ImportReport();
+
+        try (JsonParser parser = objectMapper.getFactory().createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw MismatchedInputException.from(parser, List.class, "Expected a JSON array of appointments");
+            }
+
+            List<Appointment> chunk = new ArrayList<>(CHUNK_SIZE);
+            int offset = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (token != JsonToken.START_OBJECT) {
+                    // the open chunk is not stored yet, so it is dropped with the request
+                    throw MismatchedInputException.from(parser, Appointment.class,
+                            "Expected an appointment object at index " + (offset + chunk.size()));
+                }
+                chunk.add(objectMapper.readValue(parser, Appointment.class));
+                if (chunk.size() == CHUNK_SIZE) {
+                    importChunk(chunk, offset, report);
+                    offset += chunk.size();
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                importChunk(chunk, offset, report);
+            }
+        }
+
+        return report;
+    }
+
+    /**
+     * Imports the appointments as a single chunk: one sweep and one
+     * transaction, however many there are.
+     *
+     * @param appointments
+     * @return ImportReport
+     */
+    public ImportReport importAll(List<Appointment> appointments) {
+        ImportReport report = new ImportReport();
+        if (!appointments.isEmpty()) {
+            importChunk(appointments, 0, report);
+        }
+        return report;
+    }
+
+    private void importChunk(List<Appointment> chunk, int offset, ImportReport report) {
+        ImportReport.Item[] results = new ImportReport.Item[chunk.size()];
+        List<Integer> candidates = new ArrayList<>();
+
+        for (int i = 0; i < chunk.size(); i++) {
+            if (appointmentBookingService.isInvalid(chunk.get(i))) {
+                results[i] = new ImportReport.Item(offset + i, BookingResult.Status.INVALID, null, "invalid room or time range");
+            } else {
+                candidates.add(i);
+            }
+        }
+
+        if (!candidates.isEmpty()) {
+            List<Appointment> valid = candidates.stream().map(chunk::get).collect(Collectors.toList());
+            appointmentBookingService.inBookingTransaction(valid, () -> {
+                attachReferences(valid);
+                List<Appointment> toSave = sweep(chunk, candidates, offset, results);
+                appointmentRepository.saveAll(toSave);
+                entityManager.flush();
+                entityManager.clear();
+                return toSave;
+            }, Function.identity());
+        }
+
+        for (int i = 0; i < chunk.size(); i++) {
+            if (results[i] == null) {
+                results[i] = new ImportReport.Item(offset + i, BookingResult.Status.ACCEPTED, chunk.get(i).getId(), null);
+            }
+            if (results[i].getStatus() != BookingResult.Status.CONFLICT) {
+                bookingMetrics.outcome(results[i].getStatus(), EnumSet.noneOf(BookingResult.Reason.class),
+                        BookingMetrics.SOURCE_IMPORT);
+            }
+            report.add(results[i]);
+        }
+    }
+
+    /**
+     * Visits the candidates in start order. Each room, doctor and patient
+     * the booking service checks has its own Schedule: the stored
+     * appointments in the chunk's span, and the latest finish among the
+     * items accepted so far. An item is rejected on the first schedule it
+     * overlaps, otherwise it is accepted into all of them.
+     *
+     * @return the accepted appointments
+     */
+    private List<Appointment> sweep(List<Appointment> chunk, List<Integer> candidates, int offset,
+                                    ImportReport.Item[] results) {
+        Map<List<Object>, Schedule> schedules = new HashMap<>();
+        Map<Integer, List<Schedule>> scheduleOf = new HashMap<>();
+        for (int i : candidates) {
+            List<Schedule> own = new ArrayList<>();
+            for (Schedule key : keysOf(chunk.get(i))) {
+                Schedule schedule = schedules.computeIfAbsent(key.identity(), identity -> key);
+                schedule.cover(chunk.get(i));
+                own.add(schedule);
+            }
+            scheduleOf.put(i, own);
+        }
+        for (Schedule schedule : schedules.values()) {
+            schedule.busy = mergedIntervals(findStored(schedule));
+        }
+
+        candidates.sort(Comparator.comparing((Integer i) -> chunk.get(i).getStartsAt()).thenComparing(i -> i));
+
+        List<Appointment> toSave = new ArrayList<>();
+        for (int i : candidates) {
+            Appointment appointment = chunk.get(i);
+            String reason = null;
+            BookingResult.Reason rejectedBy = null;
+            for (Schedule schedule : scheduleOf.get(i)) {
+                reason = schedule.conflictWith(appointment, offset);
+                if (reason != null) {
+                    rejectedBy = schedule.reason;
+                    break;
+                }
+            }
+
+            if (reason != null) {
+                results[i] = new ImportReport.Item(offset + i, BookingResult.Status.CONFLICT, null, reason);
+                bookingMetrics.outcome(BookingResult.Status.CONFLICT, EnumSet.of(rejectedBy), BookingMetrics.SOURCE_IMPORT);
+            } else {
+                toSave.add(appointment);
+                for (Schedule schedule : scheduleOf.get(i)) {
+                    schedule.accept(appointment, i);
+                }
+            }
+        }
+        return toSave;
+    }
+
+    private List<Schedule> keysOf(Appointment appointment) {
+        List<Schedule> keys = new ArrayList<>();
+        // stored rooms by id; a room created by this chunk has no id yet and nothing booked
+        Room room = appointment.getRoom();
+        keys.add(new Schedule(BookingResult.Reason.ROOM, room.getId() != 0 ? (Object) room.getId() : room.getRoomName()));
+        Long doctorId = appointmentBookingService.checkedDoctorId(appointment);
+        if (doctorId != null) {
+            keys.add(new Schedule(BookingResult.Reason.DOCTOR, doctorId));
+        }
+        Long patientId = appointmentBookingService.checkedPatientId(appointment);
+        if (patientId != null) {
+            keys.add(new Schedule(BookingResult.Reason.PATIENT, patientId));
+        }
+        return keys;
+    }
+
+    /**
+     * One indexed range query per room, doctor or patient.
+     */
+    private List<Appointment> findStored(Schedule schedule) {
+        return bookingMetrics.conflictCheck(schedule.reason.name().toLowerCase(), "database", () -> queryStored(schedule));
+    }
+
+    private List<Appointment> queryStored(Schedule schedule) {
+        switch (schedule.reason) {
+            case DOCTOR:
+                return appointmentRepository.findDoctorOverlapping((Long) schedule.key, schedule.from, schedule.to);
+            case PATIENT:
+                return appointmentRepository.findPatientOverlapping((Long) schedule.key, schedule.from, schedule.to);
+            default:
+                return schedule.key instanceof Long
+                        ? appointmentRepository.findOverlapping((Long) schedule.key, schedule.from, schedule.to)
+                        : new ArrayList<>();
+        }
+    }
+
+    /**
+     * @return the union of the appointments' ranges as disjoint [start, end) pairs in start order
+     */
+    private List<LocalDateTime[]> mergedIntervals(List<Appointment> appointments) {
+        List<Appointment> sorted = new ArrayList<>(appointments);
+        sorted.sort(Comparator.comparing(Appointment::getStartsAt));
+        List<LocalDateTime[]> merged = new ArrayList<>();
+        for (Appointment appointment : sorted) {
+            LocalDateTime[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && !appointment.getStartsAt().isAfter(last[1])) {
+                if (appointment.getFinishesAt().isAfter(last[1])) {
+                    last[1] = appointment.getFinishesAt();
+                }
+            } else {
+                merged.add(new LocalDateTime[] {appointment.getStartsAt(), appointment.getFinishesAt()});
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Binary search for the last busy interval starting before finishesAt;
+     * intervals are disjoint, so it is the only one that can reach past startsAt.
+     */
+    private static boolean overlapsAny(List<LocalDateTime[]> busy, LocalDateTime startsAt, LocalDateTime finishesAt) {
+        int low = 0;
+        int high = busy.size() - 1;
+        int candidate = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (busy.get(mid)[0].isBefore(finishesAt)) {
+                candidate = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return candidate >= 0 && busy.get(candidate)[1].isAfter(startsAt);
+    }
+
+    /**
+     * Batch version of the single-booking reference lookup: one query per
+     * entity type for the whole chunk.
+     */
+    private void attachReferences(List<Appointment> appointments) {
+        Set<String> roomNames = new HashSet<>();
+        Set<Long> patientIds = new HashSet<>();
+        Set<Long> doctorIds = new HashSet<>();
+        for (Appointment appointment : appointments) {
+            roomNames.add(appointment.getRoom().getRoomName());
+            if (appointment.getPatient() != null && appointment.getPatient().getId() != 0) {
+                patientIds.add(appointment.getPatient().getId());
+            }
+            if (appointment.getDoctor() != null && appointment.getDoctor().getId() != 0) {
+                doctorIds.add(appointment.getDoctor().getId());
+            }
+        }
+
+        Map<String, Room> rooms = roomRepository.findByRoomNameIn(roomNames).stream()
+                .collect(Collectors.toMap(Room::getRoomName, Function.identity()));
+        Map<Long, Patient> patients = patientRepository.findAllById(patientIds).stream()
+                .collect(Collectors.toMap(Patient::getId, Function.identity()));
+        Map<Long, Doctor> doctors = doctorRepository.findAllById(doctorIds).stream()
+                .collect(Collectors.toMap(Doctor::getId, Function.identity()));
+
+        for (Appointment appointment : appointments) {
+            appointment.setRoom(rooms.computeIfAbsent(appointment.getRoom().getRoomName(), Room::new));
+            if (appointment.getPatient() != null && patients.containsKey(appointment.getPatient().getId())) {
+                appointment.setPatient(patients.get(appointment.getPatient().getId()));
+            }
+            if (appointment.getDoctor() != null && doctors.containsKey(appointment.getDoctor().getId())) {
+                appointment.setDoctor(doctors.get(appointment.getDoctor().getId()));
+            }
+        }
+    }
+
+    private static final class Schedule {
+
+        final BookingResult.Reason reason;
+        final Object key;
+        LocalDateTime from;
+        LocalDateTime to;
+        List<LocalDateTime[]> busy;
+        LocalDateTime acceptedUntil;
+        int acceptedLast;
+
+        Schedule(BookingResult.Reason reason, Object key) {
+            this.reason = reason;
+            this.key = key;
+        }
+
+        List<Object> identity() {
+            return Arrays.asList(reason, key);
+        }
+
+        void cover(Appointment appointment) {
+            if (from == null || appointment.getStartsAt().isBefore(from)) {
+                from = appointment.getStartsAt();
+            }
+            if (to == null || appointment.getFinishesAt().isAfter(to)) {
+                to = appointment.getFinishesAt();
+            }
+        }
+
+        /**
+         * @return why the appointment cannot be accepted, or null
+         */
+        String conflictWith(Appointment appointment, int offset) {
+            String dimension = reason.name().toLowerCase();
+            if (acceptedUntil != null && appointment.getStartsAt().isBefore(acceptedUntil)) {
+                return dimension + " conflict with item " + (offset + acceptedLast);
+            }
+            if (overlapsAny(busy, appointment.getStartsAt(), appointment.getFinishesAt())) {
+                return dimension + " conflict with an existing appointment";
+            }
+            return null;
+        }
+
+        void accept(Appointment appointment, int index) {
+            if (acceptedUntil == null || appointment.getFinishesAt().isAfter(acceptedUntil)) {
+                acceptedUntil = appointment.getFinishesAt();
+                acceptedLast = index;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.example.demo.services;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * Rooms × time slots of one day. rooms maps each room name to one flag per
+ * entry of slots, true when the room is free for the whole slot.
+ */
+public class AvailabilityMatrix {
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd/MM/yyyy")
+    private final LocalDate day;
+
+    private final int slotMinutes;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm")
+    private final List<LocalTime> slots;
+
+    private final Map<String, boolean[]> rooms;
+
+    public AvailabilityMatrix(LocalDate day, int slotMinutes, List<LocalTime> slots, Map<String, boolean[]> rooms) {
+        this.day = day;
+        this.slotMinutes = slotMinutes;
+        this.slots = slots;
+        this.rooms = rooms;
+    }
+
+    public LocalDate getDay() {
+        return this.day;
+    }
+
+    public int getSlotMinutes() {
+        return this.slotMinutes;
+    }
+
+    public List<LocalTime> getSlots() {
+        return this.slots;
+    }
+
+    public Map<String, boolean[]> getRooms() {
+        return this.rooms;
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.example.demo.services;
+
+import com.example.demo.entities.*;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+
+/**
+ * Booking meters, next to the per-endpoint http.server.requests timers:
+ *
+ * booking.outcomes counts results by outcome (accepted, invalid, conflict),
+ * conflict reason (room, doctor, patient, comma separated) and source
+ * (booking, import). booking.conflict.check times each overlap check by
+ * what it checks (room, doctor, patient) and where (index, database), and
+ * booking.conflict.rows counts the appointments it read back.
+ * booking.lock.wait is the time spent queuing for the booking locks, which
+ * is where contended rooms show up first.
+ */
+@Component
+public class BookingMetrics {
+
+    public static final String SOURCE_BOOKING = "booking";
+
+    public static final String SOURCE_IMPORT = "import";
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    /**
+     * @param status
+     * @param reasons of a conflict, empty otherwise
+     * @param source SOURCE_BOOKING or SOURCE_IMPORT
+     */
+    public void outcome(BookingResult.Status status, Set<BookingResult.Reason> reasons, String source) {
+        String reason = reasons.isEmpty() ? "none" : reasons.stream()
+                .map(value -> value.name().toLowerCase())
+                .collect(Collectors.joining(","));
+        meterRegistry.counter("booking.outcomes",
+                "outcome", status.name().toLowerCase(), "reason", reason, "source", source).increment();
+    }
+
+    /**
+     * @param result
+     */
+    public void outcome(BookingResult result) {
+        outcome(result.getStatus(), result.getReasons(), SOURCE_BOOKING);
+    }
+
+    /**
+     * Runs and measures one overlap check, also for the Server-Timing
+     * header when the request is timed.
+     *
+     * @param checked room, doctor or patient
+     * @param where index or database
+     * @param check
+     * @return the conflicting appointments check found
+     */
+    public List<Appointment> conflictCheck(String checked, String where, Supplier<List<Appointment>> check) {
+        long start = System.nanoTime();
+        List<Appointment> found = check.get();
+        long elapsed = System.nanoTime() - start;
+        Timer.builder("booking.conflict.check")
+                .tags("checked", checked, "where", where)
+                .register(meterRegistry)
+                .record(elapsed, TimeUnit.NANOSECONDS);
+        RequestTiming timing = RequestTiming.current();
+        if (timing != null) {
+            timing.add(RequestTiming.Phase.CONFLICT, elapsed);
+        }
+        DistributionSummary.builder("booking.conflict.rows")
+                .tags("checked", checked, "where", where)
+                .register(meterRegistry)
+                .record(found.size());
+        return found;
+    }
+
+    /**
+     * @param nanos spent waiting for the booking locks
+     */
+    public void lockWait(long nanos) {
+        meterRegistry.timer("booking.lock.wait").record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.example.demo.services;
+
+import com.example.demo.entities.Appointment;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Outcome of {@link AppointmentBookingService#book(Appointment)}.
+ */
+public class BookingResult {
+
+    public enum Status {
+        ACCEPTED,
+        INVALID,
+        CONFLICT
+    }
+
+    /**
+     * What a conflicting appointment shares with the requested one.
+     */
+    public enum Reason {
+        ROOM,
+        DOCTOR,
+        PATIENT
+    }
+
+    private final Status status;
+    private final Appointment appointment;
+    private final List<Appointment> conflicts;
+    private final Set<Reason> reasons;
+
+    private BookingResult(Status status, Appointment appointment, List<Appointment> conflicts, Set<Reason> reasons) {
+        this.status = status;
+        this.appointment = appointment;
+        this.conflicts = conflicts;
+        this.reasons = reasons;
+    }
+
+    public static BookingResult accepted(Appointment appointment) {
+        return new BookingResult(Status.ACCEPTED, appointment, new ArrayList<>(), EnumSet.noneOf(Reason.class));
+    }
+
+    public static BookingResult invalid(Appointment appointment) {
+        return new BookingResult(Status.INVALID, appointment, new ArrayList<>(), EnumSet.noneOf(Reason.class));
+    }
+
+    public static BookingResult conflict(Appointment appointment, List<Appointment> conflicts, Set<Reason> reasons) {
+        return new BookingResult(Status.CONFLICT, appointment, conflicts, reasons);
+    }
+
+    public Status getStatus() {
+        return this.status;
+    }
+
+    public boolean isAccepted() {
+        return this.status == Status.ACCEPTED;
+    }
+
+    public Appointment getAppointment() {
+        return this.appointment;
+    }
+
+    public List<Appointment> getConflicts() {
+        return this.conflicts;
+    }
+
+    public Set<Reason> getReasons() {
+        return this.reasons;
+    }
+
+}
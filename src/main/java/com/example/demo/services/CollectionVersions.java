@@ -0,0 +1,225 @@
+package com.example.demo.services;
+
+import com.example.demo.entities.*;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.hibernate.EmptyInterceptor;
+import org.hibernate.type.Type;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.WebRequest;
+
+
+/**
+ * A version counter per resource collection, for conditional GETs that are
+ * answered without reading the database.
+ *
+ * {@link ChangeInterceptor} bumps a collection when Hibernate saves,
+ * updates or deletes one of its entities, and again after the transaction
+ * completes: a response read while the write was in flight carries a
+ * version that is already stale. Bulk HQL statements bypass the
+ * interceptor; the application does not issue any.
+ *
+ * Long-poll and streaming readers wait on {@link #nextChange}, which
+ * completes once a change is committed, without holding a thread. Each
+ * reader gets a future of its own and cancels it when it stops waiting, so
+ * readers that time out or disconnect do not pile up on a quiet collection.
+ *
+ * Only writes made through this JVM are seen, so conditional GETs are
+ * opt-in (api.etag.enabled=true) and meant for single-node deployments.
+ * They are validated by ETag only: a Last-Modified time has whole-second
+ * precision, so a write within the second of a read would still get a 304.
+ */
+@Component
+public class CollectionVersions {
+
+    public enum Collection {
+        APPOINTMENTS, ROOMS, DOCTORS, PATIENTS
+    }
+
+    @Value("${api.etag.enabled:false}")
+    boolean enabled;
+
+    /** Tells this run's versions from those of an earlier one, which also started at 0. */
+    private final String epoch = Long.toHexString(UUID.randomUUID().getMostSignificantBits());
+
+    private final AtomicLongArray versions = new AtomicLongArray(Collection.values().length);
+
+    private final List<Set<CompletableFuture<Object>>> waiting = new ArrayList<>();
+
+    public CollectionVersions() {
+        for (int i = 0; i < Collection.values().length; i++) {
+            waiting.add(ConcurrentHashMap.newKeySet());
+        }
+    }
+
+    /**
+     * @return whether GETs are answered conditionally
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Sets the ETag header of a GET that depends on the given collections,
+     * and tells whether the client's copy is current.
+     *
+     * @param request
+     * @param collections
+     * @return true when the response is 304 Not Modified and the handler should stop
+     */
+    public boolean checkNotModified(WebRequest request, Collection... collections) {
+        return enabled && request.checkNotModified(etag(collections));
+    }
+
+    /**
+     * @param collections
+     * @return strong ETag of the current state of the collections
+     */
+    public String etag(Collection... collections) {
+        StringBuilder etag = new StringBuilder("\"").append(epoch);
+        for (Collection collection : collections) {
+            etag.append('-').append(versions.get(collection.ordinal()));
+        }
+        return etag.append('"').toString();
+    }
+
+    /**
+     * Take it before reading the ETag the caller compares against, so a
+     * change in between completes it rather than being missed. Cancel it
+     * once the caller stops waiting.
+     *
+     * @param collections
+     * @return completes after the next committed change to any of the collections
+     */
+    public CompletableFuture<Object> nextChange(Collection... collections) {
+        CompletableFuture<Object> change = new CompletableFuture<>();
+        for (Collection collection : collections) {
+            waiting.get(collection.ordinal()).add(change);
+        }
+        // however it ends: a change, or the caller cancelling it
+        change.whenComplete((result, error) -> {
+            for (Collection collection : collections) {
+                waiting.get(collection.ordinal()).remove(change);
+            }
+        });
+        return change;
+    }
+
+    /**
+     * @param collection
+     * @return readers waiting for the next change to the collection
+     */
+    public int getWaiting(Collection collection) {
+        return waiting.get(collection.ordinal()).size();
+    }
+
+    /**
+     * @param collection
+     */
+    public void changed(Collection collection) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            bump(collection);
+            notifyWaiters(collection);
+            return;
+        }
+
+        @SuppressWarnings("unchecked")
+        Set<Collection> pending = (Set<Collection>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            Set<Collection> changed = EnumSet.noneOf(Collection.class);
+            TransactionSynchronizationManager.bindResource(this, changed);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(CollectionVersions.this);
+                    changed.forEach(CollectionVersions.this::bump);
+                    changed.forEach(CollectionVersions.this::notifyWaiters);
+                }
+            });
+            pending = changed;
+        }
+        if (pending.add(collection)) {
+            bump(collection);
+        }
+    }
+
+    private void bump(Collection collection) {
+        versions.incrementAndGet(collection.ordinal());
+    }
+
+    /**
+     * Only after the write is over, so woken readers see it.
+     */
+    private void notifyWaiters(Collection collection) {
+        for (CompletableFuture<Object> change : waiting.get(collection.ordinal())) {
+            change.complete(null);
+        }
+    }
+
+    private static Collection collectionOf(Object entity) {
+        if (entity instanceof Appointment) {
+            return Collection.APPOINTMENTS;
+        }
+        if (entity instanceof Room) {
+            return Collection.ROOMS;
+        }
+        if (entity instanceof Doctor) {
+            return Collection.DOCTORS;
+        }
+        if (entity instanceof Patient) {
+            return Collection.PATIENTS;
+        }
+        return null;
+    }
+
+    /**
+     * Session factory wide, so it sees every write whichever repository or
+     * service makes it.
+     */
+    public static class ChangeInterceptor extends EmptyInterceptor {
+
+        private final transient CollectionVersions collectionVersions;
+
+        public ChangeInterceptor(CollectionVersions collectionVersions) {
+            this.collectionVersions = collectionVersions;
+        }
+
+        @Override
+        public boolean onSave(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+            changed(entity);
+            return false;
+        }
+
+        @Override
+        public boolean onFlushDirty(Object entity, Serializable id, Object[] currentState, Object[] previousState,
+                                    String[] propertyNames, Type[] types) {
+            changed(entity);
+            return false;
+        }
+
+        @Override
+        public void onDelete(Object entity, Serializable id, Object[] state, String[] propertyNames, Type[] types) {
+            changed(entity);
+        }
+
+        private void changed(Object entity) {
+            Collection collection = collectionOf(entity);
+            if (collection != null) {
+                collectionVersions.changed(collection);
+            }
+        }
+    }
+
+}
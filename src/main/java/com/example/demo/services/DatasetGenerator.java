@@ -0,0 +1,338 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.function.LongSupplier;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+
+/**
+ * Fills an empty database with synthetic rooms, doctors, patients and
+ * appointments, the same ones for the same {@link Spec}.
+ *
+ * Rooms are named Room-0, Room-1, ... in order of popularity: how much of
+ * a working day a room is booked falls off as 1 / (rank + 1)^roomSkew, from
+ * 95% for Room-0 down to 20%. Appointments last 15 to 60 minutes, mostly
+ * 30, and fill weekdays from 08:00 to 18:00 with idle gaps in between. No
+ * two appointments overlap by construction: a room's day is laid out end to
+ * end, each doctor works in one room a day (rooms beyond the number of
+ * doctors get none), and a patient gets at most one appointment a day.
+ *
+ * Rows are inserted with persist and flushed every batchSize entities, so
+ * Hibernate sends them as JDBC batches (hibernate.jdbc.batch_size) and the
+ * persistence context stays small; people are committed a batch at a time
+ * and appointments a day at a time. The booking checks are skipped, which is
+ * why the database has to be empty of appointments.
+ */
+@Service
+public class DatasetGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(DatasetGenerator.class);
+
+    private static final int OPENS = 8 * 60;
+
+    private static final int CLOSES = 18 * 60;
+
+    private static final int[] DURATIONS = {15, 30, 45, 60};
+
+    private static final double[] DURATION_SHARES = {0.2, 0.45, 0.15, 0.2};
+
+    private static final String[] FIRST_NAMES = {"Ana", "Bruno", "Carla", "David", "Elena", "Felipe", "Gloria",
+            "Hugo", "Irene", "Javier", "Laura", "Manuel", "Nuria", "Oscar", "Paula", "Raul", "Sara", "Tomas"};
+
+    private static final String[] LAST_NAMES = {"Garcia", "Martinez", "Lopez", "Sanchez", "Perez", "Gomez",
+            "Martin", "Jimenez", "Ruiz", "Hernandez", "Diaz", "Moreno", "Alvarez", "Romero", "Navarro"};
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    RoomOccupancy roomOccupancy;
+
+    @Autowired(required = false)
+    RoomScheduleIndex roomScheduleIndex;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    /**
+     * @param spec
+     * @return the number of appointments inserted
+     */
+    public long generate(Spec spec) {
+        if (appointmentRepository.count() > 0) {
+            throw new IllegalStateException("The dataset generator needs a database without appointments");
+        }
+        Random random = new Random(spec.getSeed());
+
+        long[] roomIds = insert(spec.getRooms(), spec.getBatchSize(), i -> new Room("Room-" + i));
+        long[] doctorIds = insert(spec.getDoctors(), spec.getBatchSize(), i -> new Doctor(
+                pick(random, FIRST_NAMES), pick(random, LAST_NAMES), 28 + random.nextInt(40), "doctor" + i + "@hospital.test"));
+        long[] patientIds = insert(spec.getPatients(), spec.getBatchSize(), i -> new Patient(
+                pick(random, FIRST_NAMES), pick(random, LAST_NAMES), age(random), "patient" + i + "@mail.test"));
+        log.info("Generated {} rooms, {} doctors and {} patients", roomIds.length, doctorIds.length, patientIds.length);
+
+        double[] occupancy = new double[roomIds.length];
+        for (int room = 0; room < occupancy.length; room++) {
+            occupancy[room] = 0.2 + 0.75 / Math.pow(room + 1, spec.getRoomSkew());
+        }
+        shuffle(patientIds, random);
+
+        long appointments = 0;
+        PatientCursor patients = new PatientCursor(patientIds);
+        int day = 0;
+        for (LocalDate date = spec.getStartDate(); day < spec.getDays(); date = date.plusDays(1)) {
+            if (date.getDayOfWeek() == DayOfWeek.SATURDAY || date.getDayOfWeek() == DayOfWeek.SUNDAY) {
+                continue;
+            }
+            LocalDate today = date;
+            int dayIndex = day;
+            appointments += inTransaction(() -> generateDay(
+                    spec, random, today, dayIndex, roomIds, doctorIds, occupancy, patients));
+            day++;
+            if (day % 20 == 0) {
+                log.info("Generated {} days, {} appointments", day, appointments);
+            }
+        }
+
+        // the in-memory views were built without these rows
+        roomOccupancy.clear();
+        if (roomScheduleIndex != null) {
+            roomScheduleIndex.load();
+        }
+        log.info("Generated {} appointments over {} days", appointments, day);
+        return appointments;
+    }
+
+    private long generateDay(Spec spec, Random random, LocalDate date, int day, long[] roomIds, long[] doctorIds,
+                             double[] occupancy, PatientCursor patients) {
+        patients.startDay();
+        long appointments = 0;
+        for (int room = 0; room < roomIds.length; room++) {
+            Long doctorId = room < doctorIds.length
+                    ? doctorIds[(int) (((long) day * roomIds.length + room) % doctorIds.length)] : null;
+            int minute = OPENS;
+            while (minute < CLOSES) {
+                if (random.nextDouble() >= occupancy[room]) {
+                    minute += 15;
+                    continue;
+                }
+                int duration = duration(random);
+                if (minute + duration > CLOSES) {
+                    break;
+                }
+                Long patientId = patients.next();
+                LocalDateTime startsAt = date.atStartOfDay().plusMinutes(minute);
+                entityManager.persist(new Appointment(
+                        patientId == null ? null : entityManager.getReference(Patient.class, patientId),
+                        doctorId == null ? null : entityManager.getReference(Doctor.class, doctorId),
+                        entityManager.getReference(Room.class, roomIds[room]),
+                        startsAt, startsAt.plusMinutes(duration)));
+                if (++appointments % spec.getBatchSize() == 0) {
+                    entityManager.flush();
+                    entityManager.clear();
+                }
+                minute += duration;
+            }
+        }
+        return appointments;
+    }
+
+    private long[] insert(int count, int batchSize, IntFunction<Object> create) {
+        long[] ids = new long[count];
+        for (int from = 0; from < count; from += batchSize) {
+            int first = from;
+            int last = Math.min(count, from + batchSize);
+            inTransaction(() -> {
+                for (int i = first; i < last; i++) {
+                    Object entity = create.apply(i);
+                    entityManager.persist(entity);
+                    ids[i] = idOf(entity);
+                }
+                return last - first;
+            });
+        }
+        return ids;
+    }
+
+    /**
+     * Runs the inserts in a transaction of their own and leaves the
+     * persistence context empty.
+     */
+    private long inTransaction(LongSupplier inserts) {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            // keep a million rows out of the second level cache
+            entityManager.unwrap(Session.class).setCacheMode(CacheMode.IGNORE);
+            long inserted = inserts.getAsLong();
+            entityManager.flush();
+            entityManager.clear();
+            return inserted;
+        });
+    }
+
+    /**
+     * Walks the shuffled patients round robin, at most once each per day.
+     */
+    private static class PatientCursor {
+
+        private final long[] patientIds;
+
+        private int next;
+
+        private int usedToday;
+
+        PatientCursor(long[] patientIds) {
+            this.patientIds = patientIds;
+        }
+
+        void startDay() {
+            usedToday = 0;
+        }
+
+        Long next() {
+            if (usedToday == patientIds.length) {
+                return null;
+            }
+            usedToday++;
+            long patientId = patientIds[next];
+            next = (next + 1) % patientIds.length;
+            return patientId;
+        }
+    }
+
+    private static long idOf(Object entity) {
+        if (entity instanceof Room) {
+            return ((Room) entity).getId();
+        }
+        if (entity instanceof Doctor) {
+            return ((Doctor) entity).getId();
+        }
+        if (entity instanceof Patient) {
+            return ((Patient) entity).getId();
+        }
+        return 0;
+    }
+
+    private static int duration(Random random) {
+        double share = random.nextDouble();
+        for (int i = 0; i < DURATIONS.length - 1; i++) {
+            share -= DURATION_SHARES[i];
+            if (share < 0) {
+                return DURATIONS[i];
+            }
+        }
+        return DURATIONS[DURATIONS.length - 1];
+    }
+
+    /**
+     * Patients are mostly adults, centred on 45.
+     */
+    private static int age(Random random) {
+        return (int) Math.max(0, Math.min(100, Math.round(45 + random.nextGaussian() * 20)));
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static void shuffle(long[] values, Random random) {
+        for (int i = values.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            long value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+
+    /**
+     * How much to generate. The defaults make about 1.6 million appointments.
+     */
+    public static class Spec {
+
+        private long seed = 42;
+        private int rooms = 1000;
+        private int doctors = 1200;
+        private int patients = 1_000_000;
+        private int days = 260;
+        private double roomSkew = 1.0;
+        private LocalDate startDate = LocalDate.of(2023, 1, 2);
+        private int batchSize = 1000;
+
+        public long getSeed() {
+            return this.seed;
+        }
+        public void setSeed(long seed) {
+            this.seed = seed;
+        }
+
+        public int getRooms() {
+            return this.rooms;
+        }
+        public void setRooms(int rooms) {
+            this.rooms = rooms;
+        }
+
+        public int getDoctors() {
+            return this.doctors;
+        }
+        public void setDoctors(int doctors) {
+            this.doctors = doctors;
+        }
+
+        public int getPatients() {
+            return this.patients;
+        }
+        public void setPatients(int patients) {
+            this.patients = patients;
+        }
+
+        public int getDays() {
+            return this.days;
+        }
+        public void setDays(int days) {
+            this.days = days;
+        }
+
+        public double getRoomSkew() {
+            return this.roomSkew;
+        }
+        public void setRoomSkew(double roomSkew) {
+            this.roomSkew = roomSkew;
+        }
+
+        public LocalDate getStartDate() {
+            return this.startDate;
+        }
+        public void setStartDate(LocalDate startDate) {
+            this.startDate = startDate;
+        }
+
+        public int getBatchSize() {
+            return this.batchSize;
+        }
+        public void setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+        }
+    }
+
+}
@@ -0,0 +1,101 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+
+/**
+ * Finds free gaps in the calendar of a room or a doctor.
+ *
+ * The walk starts at the end of the last appointment that began before the
+ * window, then reads the appointments starting inside the window in start
+ * order, straight off the (room or doctor, startsAt, finishesAt) index, and
+ * stops as soon as enough gaps are found. The cost depends on how far into
+ * the window the gaps are, not on how many appointments the calendar holds.
+ *
+ * The last appointment before the window is the only one that can reach into
+ * it as long as the calendar has no overlaps, which the booking service
+ * guarantees for rooms and, unless booking.conflicts.doctor=ignore, for
+ * doctors.
+ */
+@Service
+public class FreeSlotService {
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    /**
+     * @param roomId
+     * @param duration minimum length of a gap
+     * @param from
+     * @param to
+     * @param limit
+     * @return up to limit free gaps of the room within [from, to), earliest first
+     */
+    @Transactional(readOnly = true)
+    public List<TimeRange> findRoomFreeSlots(long roomId, Duration duration,
+                                             LocalDateTime from, LocalDateTime to, int limit) {
+        List<TimeRange> before = appointmentRepository.findRoomRangesBefore(roomId, from, PageRequest.of(0, 1));
+        try (Stream<TimeRange> booked = appointmentRepository.streamRoomRanges(roomId, from, to)) {
+            return findGaps(before, booked.iterator(), duration, from, to, limit);
+        }
+    }
+
+    /**
+     * @param doctorId
+     * @param duration minimum length of a gap
+     * @param from
+     * @param to
+     * @param limit
+     * @return up to limit free gaps of the doctor within [from, to), earliest first
+     */
+    @Transactional(readOnly = true)
+    public List<TimeRange> findDoctorFreeSlots(long doctorId, Duration duration,
+                                               LocalDateTime from, LocalDateTime to, int limit) {
+        List<TimeRange> before = appointmentRepository.findDoctorRangesBefore(doctorId, from, PageRequest.of(0, 1));
+        try (Stream<TimeRange> booked = appointmentRepository.streamDoctorRanges(doctorId, from, to)) {
+            return findGaps(before, booked.iterator(), duration, from, to, limit);
+        }
+    }
+
+    private List<TimeRange> findGaps(List<TimeRange> before, Iterator<TimeRange> booked, Duration duration,
+                                     LocalDateTime from, LocalDateTime to, int limit) {
+        List<TimeRange> gaps = new ArrayList<>();
+
+        LocalDateTime freeFrom = from;
+        if (!before.isEmpty() && before.get(0).getFinishesAt().isAfter(freeFrom)) {
+            freeFrom = before.get(0).getFinishesAt();
+        }
+
+        while (booked.hasNext() && gaps.size() < limit) {
+            TimeRange next = booked.next();
+            if (fits(freeFrom, next.getStartsAt(), duration)) {
+                gaps.add(new TimeRange(freeFrom, next.getStartsAt()));
+            }
+            if (next.getFinishesAt().isAfter(freeFrom)) {
+                freeFrom = next.getFinishesAt();
+            }
+        }
+
+        if (gaps.size() < limit && fits(freeFrom, to, duration)) {
+            gaps.add(new TimeRange(freeFrom, to));
+        }
+        return gaps;
+    }
+
+    private boolean fits(LocalDateTime startsAt, LocalDateTime finishesAt, Duration duration) {
+        return startsAt.isBefore(finishesAt) && Duration.between(startsAt, finishesAt).compareTo(duration) >= 0;
+    }
+
+}
@@ -0,0 +1,70 @@
+package com.example.demo.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Per-item outcome of {@link AppointmentImportService}, in request order.
+ */
+public class ImportReport {
+
+    private long accepted;
+    private long rejected;
+    private final List<Item> items = new ArrayList<>();
+
+    void add(Item item) {
+        items.add(item);
+        if (item.getStatus() == BookingResult.Status.ACCEPTED) {
+            accepted++;
+        } else {
+            rejected++;
+        }
+    }
+
+    public long getAccepted() {
+        return this.accepted;
+    }
+
+    public long getRejected() {
+        return this.rejected;
+    }
+
+    public List<Item> getItems() {
+        return this.items;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Item {
+
+        private final int index;
+        private final BookingResult.Status status;
+        private final Long id;
+        private final String reason;
+
+        Item(int index, BookingResult.Status status, Long id, String reason) {
+            this.index = index;
+            this.status = status;
+            this.id = id;
+            this.reason = reason;
+        }
+
+        public int getIndex() {
+            return this.index;
+        }
+
+        public BookingResult.Status getStatus() {
+            return this.status;
+        }
+
+        public Long getId() {
+            return this.id;
+        }
+
+        public String getReason() {
+            return this.reason;
+        }
+    }
+
+}
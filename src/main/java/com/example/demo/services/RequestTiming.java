@@ -0,0 +1,186 @@
+package com.example.demo.services;
+
+import java.util.Locale;
+
+import org.hibernate.BaseSessionEventListener;
+
+
+/**
+ * Where the time of one request went, for the Server-Timing header: body
+ * deserialization, conflict checks, JDBC statements and response
+ * serialization. Only requests that ask for it carry one (see
+ * ServerTimingFilter); everything else finds no current timing and pays
+ * a thread local lookup.
+ *
+ * Phases are measured on the request thread. Work an async request hands
+ * to another thread is not counted, and conflict checks are database time
+ * too, so the phases need not add up to the total.
+ */
+public class RequestTiming {
+
+    public enum Phase {
+        DESERIALIZE("deserialize"),
+        CONFLICT("conflict"),
+        DB("db"),
+        SERIALIZE("serialize");
+
+        private final String metric;
+
+        Phase(String metric) {
+            this.metric = metric;
+        }
+    }
+
+    private static final ThreadLocal<RequestTiming> CURRENT = new ThreadLocal<>();
+
+    private final long startedAt = System.nanoTime();
+
+    private final long[] nanos = new long[Phase.values().length];
+
+    private final long[] begun = new long[Phase.values().length];
+
+    private int statements;
+
+    /**
+     * @return the timing of the request on this thread, or null when it is not timed
+     */
+    public static RequestTiming current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return a new timing, current on this thread until {@link #detach()}
+     */
+    public static RequestTiming attach() {
+        RequestTiming timing = new RequestTiming();
+        CURRENT.set(timing);
+        return timing;
+    }
+
+    public static void detach() {
+        CURRENT.remove();
+    }
+
+    /**
+     * @param phase
+     * @param elapsed nanoseconds
+     */
+    public void add(Phase phase, long elapsed) {
+        nanos[phase.ordinal()] += elapsed;
+    }
+
+    /**
+     * Starts timing a phase that {@link #end(Phase)} stops, for phases that
+     * begin and end in different callbacks.
+     *
+     * @param phase
+     */
+    public void begin(Phase phase) {
+        begun[phase.ordinal()] = System.nanoTime();
+    }
+
+    /**
+     * @param phase
+     */
+    public void end(Phase phase) {
+        if (begun[phase.ordinal()] != 0) {
+            add(phase, System.nanoTime() - begun[phase.ordinal()]);
+            begun[phase.ordinal()] = 0;
+        }
+    }
+
+    public void statement() {
+        statements++;
+    }
+
+    public long getNanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    public int getStatements() {
+        return this.statements;
+    }
+
+    /**
+     * @return nanoseconds since the timing was attached
+     */
+    public long getElapsed() {
+        return System.nanoTime() - startedAt;
+    }
+
+    /**
+     * @param total nanoseconds
+     * @return Server-Timing header value, durations in milliseconds
+     */
+    public String header(long total) {
+        StringBuilder header = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            header.append(phase.metric).append(";dur=").append(millis(getNanos(phase)));
+            if (phase == Phase.DB) {
+                header.append(";desc=\"").append(statements).append(" statements\"");
+            }
+            header.append(", ");
+        }
+        return header.append("total;dur=").append(millis(total)).toString();
+    }
+
+    /**
+     * @param total nanoseconds
+     * @return the same breakdown as key=value pairs for a log line
+     */
+    public String logFields(long total) {
+        StringBuilder fields = new StringBuilder();
+        for (Phase phase : Phase.values()) {
+            fields.append(phase.metric).append("_ms=").append(millis(getNanos(phase))).append(' ');
+        }
+        return fields.append("db_statements=").append(statements)
+                .append(" total_ms=").append(millis(total)).toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / 1e6);
+    }
+
+    /**
+     * Adds every JDBC statement and batch a session executes to the timing
+     * of the request on the thread. Hibernate creates one per session
+     * (hibernate.session.events.auto).
+     */
+    public static class StatementListener extends BaseSessionEventListener {
+
+        private static final long serialVersionUID = 1L;
+
+        private long executeStart;
+
+        private long batchStart;
+
+        @Override
+        public void jdbcExecuteStatementStart() {
+            executeStart = System.nanoTime();
+        }
+
+        @Override
+        public void jdbcExecuteStatementEnd() {
+            executed(executeStart);
+        }
+
+        @Override
+        public void jdbcExecuteBatchStart() {
+            batchStart = System.nanoTime();
+        }
+
+        @Override
+        public void jdbcExecuteBatchEnd() {
+            executed(batchStart);
+        }
+
+        private void executed(long start) {
+            RequestTiming timing = current();
+            if (timing != null) {
+                timing.add(Phase.DB, System.nanoTime() - start);
+                timing.statement();
+            }
+        }
+    }
+
+}
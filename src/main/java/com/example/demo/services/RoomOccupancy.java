@@ -0,0 +1,357 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Minute-by-minute occupancy of every room, one day at a time.
+ *
+ * A room's day is a bitmap of 1440 bits packed into 23 longs, bit m set
+ * when minute m is booked. Whether a room is free over a range is then a
+ * handful of masked word tests instead of comparing LocalDateTime pairs.
+ *
+ * Days are loaded on first use with two queries for all rooms at once and
+ * kept for the most recently used booking.occupancy.cache-days days. The
+ * booking service updates loaded days while it still holds the booking
+ * locks, so on a single node they are current. Like the room schedule index
+ * they only see writes made through this JVM: another instance's bookings
+ * would not show up in free rooms or availability until the day is evicted.
+ * With booking.lock-mode=database, which means several instances, nothing
+ * is cached whatever cache-days says and every lookup reads the day from
+ * the database. Booking itself never trusts these bitmaps; they only rank
+ * candidate rooms and answer availability questions.
+ *
+ * Guarded by a ReentrantLock rather than a monitor: a virtual thread that
+ * waits for it unmounts instead of pinning its carrier.
+ */
+@Component
+public class RoomOccupancy {
+
+    public static final int MINUTES_PER_DAY = 24 * 60;
+
+    private static final int WORDS = (MINUTES_PER_DAY + Long.SIZE - 1) / Long.SIZE;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Value("${booking.occupancy.cache-days:62}")
+    int cacheDays;
+
+    @Value("${booking.lock-mode:local}")
+    String lockMode;
+
+    private final LinkedHashMap<LocalDate, Map<String, long[]>> days = new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Bumped by every write, so a load that raced with one is not cached. */
+    private long version;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * @return whether loaded days are kept; never when other instances write too
+     */
+    private boolean isCaching() {
+        return cacheDays > 0 && !"database".equalsIgnoreCase(lockMode);
+    }
+
+    /**
+     * @param day
+     * @return bitmap of every room with at least one booked minute that day
+     */
+    public Map<String, long[]> getDay(LocalDate day) {
+        long loadedAt;
+        lock.lock();
+        try {
+            Map<String, long[]> cached = days.get(day);
+            if (cached != null) {
+                return copy(cached);
+            }
+            loadedAt = version;
+        } finally {
+            lock.unlock();
+        }
+
+        Map<String, long[]> loaded = load(day);
+
+        lock.lock();
+        try {
+            if (isCaching() && version == loadedAt && !days.containsKey(day)) {
+                days.put(day, copy(loaded));
+                while (days.size() > cacheDays) {
+                    days.remove(days.keySet().iterator().next());
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        return loaded;
+    }
+
+    /**
+     * @param roomNames
+     * @param day
+     * @param fromMinute first minute of the first slot
+     * @param toMinute end of the last slot, exclusive
+     * @param slotMinutes
+     * @return AvailabilityMatrix of the given rooms, in the given order
+     */
+    public AvailabilityMatrix getAvailability(List<String> roomNames, LocalDate day,
+                                              int fromMinute, int toMinute, int slotMinutes) {
+        Map<String, long[]> booked = getDay(day);
+
+        List<LocalTime> slots = new ArrayList<>();
+        for (int minute = fromMinute; minute < toMinute; minute += slotMinutes) {
+            slots.add(LocalTime.MIDNIGHT.plusMinutes(minute));
+        }
+
+        Map<String, boolean[]> rooms = new LinkedHashMap<>();
+        for (String roomName : roomNames) {
+            long[] bits = booked.get(roomName);
+            boolean[] free = new boolean[slots.size()];
+            for (int slot = 0; slot < free.length; slot++) {
+                int start = fromMinute + slot * slotMinutes;
+                free[slot] = bits == null || isFree(bits, start, Math.min(start + slotMinutes, toMinute));
+            }
+            rooms.put(roomName, free);
+        }
+        return new AvailabilityMatrix(day, slotMinutes, slots, rooms);
+    }
+
+    /**
+     * @param roomNames
+     * @param from
+     * @param to
+     * @return the rooms of roomNames with no booked minute in [from, to), in the given order
+     */
+    public List<String> findFreeRooms(List<String> roomNames, LocalDateTime from, LocalDateTime to) {
+        List<String> free = new ArrayList<>(roomNames);
+        for (LocalDate day = from.toLocalDate(); day.atStartOfDay().isBefore(to) && !free.isEmpty(); day = day.plusDays(1)) {
+            int[] minutes = clip(day, from, to);
+            Map<String, long[]> booked = getDay(day);
+            free.removeIf(roomName -> booked.containsKey(roomName)
+                    && !isFree(booked.get(roomName), minutes[0], minutes[1]));
+        }
+        return free;
+    }
+
+    /**
+     * Best fit: rooms whose free gap around [from, to) is smallest come
+     * first, so long gaps stay available for long appointments. The gap is
+     * measured within the first and the last day of the range.
+     *
+     * @param roomNames
+     * @param from
+     * @param to
+     * @return the rooms of roomNames with no booked minute in [from, to), tightest fit first
+     */
+    public List<String> rankFreeRooms(List<String> roomNames, LocalDateTime from, LocalDateTime to) {
+        List<String> free = findFreeRooms(roomNames, from, to);
+
+        LocalDate firstDay = from.toLocalDate();
+        LocalDate lastDay = to.minusNanos(1).toLocalDate();
+        int fromMinute = clip(firstDay, from, to)[0];
+        int toMinute = clip(lastDay, from, to)[1];
+        Map<String, long[]> first = getDay(firstDay);
+        Map<String, long[]> last = lastDay.equals(firstDay) ? first : getDay(lastDay);
+
+        Map<String, Integer> slack = new HashMap<>();
+        for (String roomName : free) {
+            int before = first.containsKey(roomName) ? fromMinute - previousBusy(first.get(roomName), fromMinute) - 1 : fromMinute;
+            int after = last.containsKey(roomName) ? nextBusy(last.get(roomName), toMinute) - toMinute : MINUTES_PER_DAY - toMinute;
+            slack.put(roomName, before + after);
+        }
+        free.sort(Comparator.comparing((String roomName) -> slack.get(roomName)).thenComparing(roomName -> roomName));
+        return free;
+    }
+
+    /**
+     * @param appointment
+     */
+    public void add(Appointment appointment) {
+        update(appointment, true);
+    }
+
+    /**
+     * @param appointment
+     */
+    public void remove(Appointment appointment) {
+        update(appointment, false);
+    }
+
+    /**
+     * @param roomName
+     */
+    public void removeRoom(String roomName) {
+        lock.lock();
+        try {
+            version++;
+            for (Map<String, long[]> rooms : days.values()) {
+                rooms.remove(roomName);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            version++;
+            days.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @param bits a day bitmap
+     * @param fromMinute
+     * @param toMinute exclusive
+     * @return true when no minute of [fromMinute, toMinute) is booked
+     */
+    public static boolean isFree(long[] bits, int fromMinute, int toMinute) {
+        for (int word = fromMinute / Long.SIZE; word < WORDS && word * Long.SIZE < toMinute; word++) {
+            if ((bits[word] & mask(word, fromMinute, toMinute)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the last booked minute before minute, or -1
+     */
+    static int previousBusy(long[] bits, int minute) {
+        if (minute <= 0) {
+            return -1;
+        }
+        int last = minute - 1;
+        int word = last / Long.SIZE;
+        int offset = last % Long.SIZE;
+        long booked = bits[word] & (offset == Long.SIZE - 1 ? -1L : (1L << (offset + 1)) - 1);
+        while (booked == 0) {
+            if (--word < 0) {
+                return -1;
+            }
+            booked = bits[word];
+        }
+        return word * Long.SIZE + Long.SIZE - 1 - Long.numberOfLeadingZeros(booked);
+    }
+
+    /**
+     * @return the first booked minute at or after minute, or MINUTES_PER_DAY
+     */
+    static int nextBusy(long[] bits, int minute) {
+        if (minute >= MINUTES_PER_DAY) {
+            return MINUTES_PER_DAY;
+        }
+        int word = minute / Long.SIZE;
+        long booked = bits[word] & (-1L << (minute % Long.SIZE));
+        while (booked == 0) {
+            if (++word == WORDS) {
+                return MINUTES_PER_DAY;
+            }
+            booked = bits[word];
+        }
+        return Math.min(word * Long.SIZE + Long.numberOfTrailingZeros(booked), MINUTES_PER_DAY);
+    }
+
+    private void update(Appointment appointment, boolean booked) {
+        lock.lock();
+        try {
+            version++;
+            if (appointment.getRoom() == null || appointment.getStartsAt() == null || appointment.getFinishesAt() == null) {
+                return;
+            }
+            String roomName = appointment.getRoom().getRoomName();
+            for (Map.Entry<LocalDate, Map<String, long[]>> day : days.entrySet()) {
+                int[] range = clip(day.getKey(), appointment.getStartsAt(), appointment.getFinishesAt());
+                if (range == null) {
+                    continue;
+                }
+                long[] bits = day.getValue().computeIfAbsent(roomName, name -> new long[WORDS]);
+                apply(bits, range[0], range[1], booked);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Map<String, long[]> load(LocalDate day) {
+        LocalDateTime start = day.atStartOfDay();
+        LocalDateTime end = start.plusDays(1);
+
+        List<RoomTimeRange> ranges = new ArrayList<>(appointmentRepository.findRoomRangesRunningAt(start));
+        ranges.addAll(appointmentRepository.findRoomRangesStartingBetween(start, end));
+
+        Map<String, long[]> rooms = new HashMap<>();
+        for (RoomTimeRange range : ranges) {
+            int[] minutes = clip(day, range.getStartsAt(), range.getFinishesAt());
+            if (minutes != null) {
+                apply(rooms.computeIfAbsent(range.getRoomName(), name -> new long[WORDS]), minutes[0], minutes[1], true);
+            }
+        }
+        return rooms;
+    }
+
+    /**
+     * @return the minutes of day covered by [startsAt, finishesAt), rounded
+     * outwards to whole minutes, or null when the range misses the day
+     */
+    private static int[] clip(LocalDate day, LocalDateTime startsAt, LocalDateTime finishesAt) {
+        LocalDateTime start = day.atStartOfDay();
+        LocalDateTime end = start.plusDays(1);
+        if (!startsAt.isBefore(end) || !finishesAt.isAfter(start)) {
+            return null;
+        }
+        int from = startsAt.isAfter(start) ? (int) Duration.between(start, startsAt).toMinutes() : 0;
+        int to = finishesAt.isBefore(end)
+                ? (int) Duration.between(start, finishesAt.plusMinutes(1).minusNanos(1)).toMinutes()
+                : MINUTES_PER_DAY;
+        return new int[] {from, to};
+    }
+
+    private static void apply(long[] bits, int fromMinute, int toMinute, boolean booked) {
+        for (int word = fromMinute / Long.SIZE; word < WORDS && word * Long.SIZE < toMinute; word++) {
+            long mask = mask(word, fromMinute, toMinute);
+            bits[word] = booked ? bits[word] | mask : bits[word] & ~mask;
+        }
+    }
+
+    /**
+     * @return the bits of word that fall inside [fromMinute, toMinute)
+     */
+    private static long mask(int word, int fromMinute, int toMinute) {
+        int low = Math.max(fromMinute - word * Long.SIZE, 0);
+        int high = Math.min(toMinute - word * Long.SIZE, Long.SIZE);
+        if (low >= high) {
+            return 0L;
+        }
+        long upTo = high == Long.SIZE ? -1L : (1L << high) - 1;
+        return upTo & (-1L << low);
+    }
+
+    private static Map<String, long[]> copy(Map<String, long[]> rooms) {
+        Map<String, long[]> copy = new HashMap<>();
+        rooms.forEach((roomName, bits) -> copy.put(roomName, bits.clone()));
+        return copy;
+    }
+
+}
@@ -0,0 +1,252 @@
+package com.example.demo.services;
+
+import java.util.Arrays;
+
+
+/**
+ * Interval partitioning of appointment requests into rooms.
+ *
+ * Requests are visited in start order. A min-heap holds every room keyed by
+ * the time it becomes free; a request goes to the room that has been free
+ * the longest, or opens a new room when none is free yet. Without reserved
+ * ranges this uses as many rooms as requests overlap at the busiest instant,
+ * which is the minimum.
+ *
+ * Existing appointments are reserved on their room before assigning. A free
+ * room whose next reserved range starts before the request ends is passed
+ * over for that request; a room inside a reserved range goes back on the
+ * heap keyed by the range's end. With reservations the greedy is no longer
+ * guaranteed minimal, only close to it.
+ *
+ * Times are plain longs in any unit, ranges are half open. O(n log n) for n
+ * requests, plus the rooms passed over.
+ */
+public class RoomPlanner {
+
+    public static final int UNASSIGNED = -1;
+
+    private final int rooms;
+
+    /** Per room, (start, end) pairs in the order they were reserved. */
+    private final long[][] reserved;
+
+    private final int[] reservedLength;
+
+    /**
+     * @param rooms number of existing rooms, numbered from 0
+     */
+    public RoomPlanner(int rooms) {
+        this.rooms = rooms;
+        this.reserved = new long[rooms][];
+        this.reservedLength = new int[rooms];
+        Arrays.fill(reserved, new long[0]);
+    }
+
+    /**
+     * @param room
+     * @param startsAt
+     * @param finishesAt exclusive
+     */
+    public void reserve(int room, long startsAt, long finishesAt) {
+        int length = reservedLength[room];
+        if (length == reserved[room].length) {
+            reserved[room] = Arrays.copyOf(reserved[room], Math.max(8, 2 * length));
+        }
+        reserved[room][length] = startsAt;
+        reserved[room][length + 1] = finishesAt;
+        reservedLength[room] = length + 2;
+    }
+
+    /**
+     * @param startsAt
+     * @param finishesAt exclusive
+     * @return the room of every request; numbers from the existing room
+     * count on are new rooms, UNASSIGNED marks an empty or reversed range
+     */
+    public int[] assign(long[] startsAt, long[] finishesAt) {
+        int n = startsAt.length;
+        int[] assigned = new int[n];
+        Arrays.fill(assigned, UNASSIGNED);
+
+        long[][] blocked = new long[rooms][];
+        for (int room = 0; room < rooms; room++) {
+            blocked[room] = merge(reserved[room], reservedLength[room]);
+        }
+        int[] next = new int[rooms];
+
+        RoomHeap heap = new RoomHeap(rooms + 16);
+        for (int room = 0; room < rooms; room++) {
+            heap.push(Long.MIN_VALUE, room);
+        }
+
+        int[] passedOver = new int[rooms];
+        long[] passedOverFreeAt = new long[rooms];
+        int roomCount = rooms;
+
+        for (int i : byStart(startsAt, finishesAt)) {
+            long start = startsAt[i];
+            long end = finishesAt[i];
+
+            int chosen = UNASSIGNED;
+            int skipped = 0;
+            while (!heap.isEmpty() && heap.peekFreeAt() <= start) {
+                long freeAt = heap.peekFreeAt();
+                int room = heap.pop();
+                if (room >= rooms) {
+                    chosen = room;
+                    break;
+                }
+
+                long[] ranges = blocked[room];
+                int r = next[room];
+                while (r < ranges.length && ranges[r + 1] <= start) {
+                    r += 2;
+                }
+                next[room] = r;
+
+                if (r == ranges.length || ranges[r] >= end) {
+                    chosen = room;
+                    break;
+                }
+                if (ranges[r] <= start) {
+                    heap.push(ranges[r + 1], room);
+                } else {
+                    passedOver[skipped] = room;
+                    passedOverFreeAt[skipped++] = freeAt;
+                }
+            }
+            for (int s = 0; s < skipped; s++) {
+                heap.push(passedOverFreeAt[s], passedOver[s]);
+            }
+
+            if (chosen == UNASSIGNED) {
+                chosen = roomCount++;
+            }
+            assigned[i] = chosen;
+            heap.push(end, chosen);
+        }
+        return assigned;
+    }
+
+    /**
+     * @return the indexes of the valid requests, by start then by index
+     */
+    private static int[] byStart(long[] startsAt, long[] finishesAt) {
+        Integer[] order = new Integer[startsAt.length];
+        int valid = 0;
+        for (int i = 0; i < startsAt.length; i++) {
+            if (startsAt[i] < finishesAt[i]) {
+                order[valid++] = i;
+            }
+        }
+        Arrays.sort(order, 0, valid, (a, b) -> startsAt[a] != startsAt[b] ? Long.compare(startsAt[a], startsAt[b]) : Integer.compare(a, b));
+
+        int[] sorted = new int[valid];
+        for (int v = 0; v < valid; v++) {
+            sorted[v] = order[v];
+        }
+        return sorted;
+    }
+
+    /**
+     * @return the ranges sorted and merged into disjoint (start, end) pairs
+     */
+    private static long[] merge(long[] ranges, int length) {
+        int count = length / 2;
+        Integer[] order = new Integer[count];
+        for (int r = 0; r < count; r++) {
+            order[r] = r;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(ranges[2 * a], ranges[2 * b]));
+
+        long[] merged = new long[length];
+        int size = 0;
+        for (int r : order) {
+            long start = ranges[2 * r];
+            long end = ranges[2 * r + 1];
+            if (start >= end) {
+                continue;
+            }
+            if (size > 0 && start <= merged[size - 1]) {
+                merged[size - 1] = Math.max(merged[size - 1], end);
+            } else {
+                merged[size++] = start;
+                merged[size++] = end;
+            }
+        }
+        return Arrays.copyOf(merged, size);
+    }
+
+    /**
+     * Binary min-heap of (freeAt, room) on two parallel arrays, ties broken
+     * by room number so a plan is reproducible.
+     */
+    private static final class RoomHeap {
+
+        private long[] freeAt;
+        private int[] room;
+        private int size;
+
+        RoomHeap(int capacity) {
+            freeAt = new long[capacity];
+            room = new int[capacity];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        long peekFreeAt() {
+            return freeAt[0];
+        }
+
+        void push(long at, int r) {
+            if (size == freeAt.length) {
+                freeAt = Arrays.copyOf(freeAt, size * 2);
+                room = Arrays.copyOf(room, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!less(at, r, freeAt[parent], room[parent])) {
+                    break;
+                }
+                freeAt[i] = freeAt[parent];
+                room[i] = room[parent];
+                i = parent;
+            }
+            freeAt[i] = at;
+            room[i] = r;
+        }
+
+        int pop() {
+            int top = room[0];
+            long at = freeAt[--size];
+            int r = room[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && less(freeAt[child + 1], room[child + 1], freeAt[child], room[child])) {
+                    child++;
+                }
+                if (!less(freeAt[child], room[child], at, r)) {
+                    break;
+                }
+                freeAt[i] = freeAt[child];
+                room[i] = room[child];
+                i = child;
+            }
+            freeAt[i] = at;
+            room[i] = r;
+            return top;
+        }
+
+        private static boolean less(long at, int r, long otherAt, int otherRoom) {
+            return at < otherAt || (at == otherAt && r < otherRoom);
+        }
+    }
+
+}
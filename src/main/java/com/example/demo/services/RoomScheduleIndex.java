@@ -0,0 +1,308 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * In-memory index of booked time ranges, one sorted set per room.
+ *
+ * Each room keeps its appointments in an interval tree ordered by start
+ * time, where each node knows the latest finish below it. A conflict check
+ * for [start, end) only descends into subtrees that can reach it, so it
+ * costs O(log n) plus O(log n) per conflict found, however long the room's
+ * longest appointment is.
+ *
+ * The index only sees writes made through this JVM, so it is opt-in
+ * (booking.index.enabled=true) and meant for single-node deployments.
+ */
+@Component
+@ConditionalOnProperty(name = "booking.index.enabled", havingValue = "true")
+public class RoomScheduleIndex {
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    private final ConcurrentMap<Long, RoomSchedule> schedules = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void load() {
+        clear();
+        for (Appointment appointment : appointmentRepository.findAll()) {
+            add(appointment);
+        }
+    }
+
+    /**
+     * @param appointment
+     */
+    public void add(Appointment appointment) {
+        if (!isIndexable(appointment)) {
+            return;
+        }
+        schedules.computeIfAbsent(appointment.getRoom().getId(), roomId -> new RoomSchedule())
+                .add(Slot.of(appointment));
+    }
+
+    /**
+     * @param appointment
+     */
+    public void remove(Appointment appointment) {
+        if (!isIndexable(appointment)) {
+            return;
+        }
+        RoomSchedule schedule = schedules.get(appointment.getRoom().getId());
+        if (schedule != null) {
+            schedule.remove(Slot.of(appointment));
+        }
+    }
+
+    public void clear() {
+        schedules.clear();
+    }
+
+    /**
+     * @param roomId
+     * @param startsAt
+     * @param finishesAt
+     * @return ids of the appointments in the room that intersect [startsAt, finishesAt)
+     */
+    public List<Long> findConflicts(long roomId, LocalDateTime startsAt, LocalDateTime finishesAt) {
+        RoomSchedule schedule = schedules.get(roomId);
+        if (schedule == null) {
+            return new ArrayList<>();
+        }
+        return schedule.findConflicts(startsAt, finishesAt);
+    }
+
+    /**
+     * @param appointment
+     * @return boolean
+     */
+    public boolean hasConflict(Appointment appointment) {
+        if (!isIndexable(appointment)) {
+            return false;
+        }
+        return !findConflicts(appointment.getRoom().getId(),
+                appointment.getStartsAt(), appointment.getFinishesAt()).isEmpty();
+    }
+
+    private boolean isIndexable(Appointment appointment) {
+        return appointment.getRoom() != null
+                && appointment.getRoom().getId() != 0
+                && appointment.getStartsAt() != null
+                && appointment.getFinishesAt() != null;
+    }
+
+    /**
+     * Interval tree: an AVL tree ordered by start time where every node also
+     * keeps the latest finish in its subtree, so a search skips every
+     * subtree that ends before the range starts and, being ordered by
+     * start, every right subtree that starts after it ends.
+     *
+     * A ReentrantLock rather than a monitor, so virtual threads waiting for
+     * it do not pin their carrier.
+     */
+    private static final class RoomSchedule {
+
+        private Node root;
+        private final ReentrantLock lock = new ReentrantLock();
+
+        void add(Slot slot) {
+            lock.lock();
+            try {
+                root = insert(root, slot);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void remove(Slot slot) {
+            lock.lock();
+            try {
+                root = delete(root, slot);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        List<Long> findConflicts(LocalDateTime startsAt, LocalDateTime finishesAt) {
+            lock.lock();
+            try {
+                List<Long> conflicts = new ArrayList<>();
+                collect(root, startsAt, finishesAt, conflicts);
+                return conflicts;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Adds the ids of the slots under node that intersect [startsAt, finishesAt), in start order.
+         */
+        private static void collect(Node node, LocalDateTime startsAt, LocalDateTime finishesAt, List<Long> conflicts) {
+            if (node == null || !node.maxFinish.isAfter(startsAt)) {
+                return;
+            }
+            collect(node.left, startsAt, finishesAt, conflicts);
+            if (node.slot.startsAt.isBefore(finishesAt)) {
+                if (node.slot.finishesAt.isAfter(startsAt)) {
+                    conflicts.add(node.slot.id);
+                }
+                collect(node.right, startsAt, finishesAt, conflicts);
+            }
+        }
+
+        private static Node insert(Node node, Slot slot) {
+            if (node == null) {
+                return new Node(slot);
+            }
+            int order = Slot.ORDER.compare(slot, node.slot);
+            if (order < 0) {
+                node.left = insert(node.left, slot);
+            } else if (order > 0) {
+                node.right = insert(node.right, slot);
+            } else {
+                return node;
+            }
+            return balance(node);
+        }
+
+        private static Node delete(Node node, Slot slot) {
+            if (node == null) {
+                return null;
+            }
+            int order = Slot.ORDER.compare(slot, node.slot);
+            if (order < 0) {
+                node.left = delete(node.left, slot);
+            } else if (order > 0) {
+                node.right = delete(node.right, slot);
+            } else {
+                if (node.left == null) {
+                    return node.right;
+                }
+                if (node.right == null) {
+                    return node.left;
+                }
+                Node successor = node.right;
+                while (successor.left != null) {
+                    successor = successor.left;
+                }
+                successor.right = deleteFirst(node.right);
+                successor.left = node.left;
+                node = successor;
+            }
+            return balance(node);
+        }
+
+        private static Node deleteFirst(Node node) {
+            if (node.left == null) {
+                return node.right;
+            }
+            node.left = deleteFirst(node.left);
+            return balance(node);
+        }
+
+        private static Node balance(Node node) {
+            node.update();
+            int skew = height(node.left) - height(node.right);
+            if (skew > 1) {
+                if (height(node.left.left) < height(node.left.right)) {
+                    node.left = rotateLeft(node.left);
+                }
+                return rotateRight(node);
+            }
+            if (skew < -1) {
+                if (height(node.right.right) < height(node.right.left)) {
+                    node.right = rotateRight(node.right);
+                }
+                return rotateLeft(node);
+            }
+            return node;
+        }
+
+        private static Node rotateRight(Node node) {
+            Node left = node.left;
+            node.left = left.right;
+            left.right = node;
+            node.update();
+            left.update();
+            return left;
+        }
+
+        private static Node rotateLeft(Node node) {
+            Node right = node.right;
+            node.right = right.left;
+            right.left = node;
+            node.update();
+            right.update();
+            return right;
+        }
+
+        private static int height(Node node) {
+            return node == null ? 0 : node.height;
+        }
+    }
+
+    private static final class Node {
+
+        final Slot slot;
+        Node left;
+        Node right;
+        int height = 1;
+        /** Latest finish of the slots in this subtree. */
+        LocalDateTime maxFinish;
+
+        Node(Slot slot) {
+            this.slot = slot;
+            this.maxFinish = slot.finishesAt;
+        }
+
+        void update() {
+            height = 1 + Math.max(RoomSchedule.height(left), RoomSchedule.height(right));
+            maxFinish = slot.finishesAt;
+            if (left != null && left.maxFinish.isAfter(maxFinish)) {
+                maxFinish = left.maxFinish;
+            }
+            if (right != null && right.maxFinish.isAfter(maxFinish)) {
+                maxFinish = right.maxFinish;
+            }
+        }
+    }
+
+    private static final class Slot {
+
+        static final Comparator<Slot> ORDER = Comparator
+                .comparing((Slot slot) -> slot.startsAt)
+                .thenComparingLong(slot -> slot.id);
+
+        final long id;
+        final LocalDateTime startsAt;
+        final LocalDateTime finishesAt;
+
+        Slot(long id, LocalDateTime startsAt, LocalDateTime finishesAt) {
+            this.id = id;
+            this.startsAt = startsAt;
+            this.finishesAt = finishesAt;
+        }
+
+        static Slot of(Appointment appointment) {
+            return new Slot(appointment.getId(), appointment.getStartsAt(), appointment.getFinishesAt());
+        }
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.example.demo.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * Room proposed by {@link SchedulePlanService} for every request, in request
+ * order, and the import report when the plan was committed.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class SchedulePlan {
+
+    public enum Status {
+        ASSIGNED, NEW_ROOM, INVALID
+    }
+
+    private int roomsUsed;
+    private int newRooms;
+    private final List<Item> items = new ArrayList<>();
+    private ImportReport committed;
+
+    void add(Item item) {
+        items.add(item);
+    }
+
+    public int getRoomsUsed() {
+        return this.roomsUsed;
+    }
+
+    void setRoomsUsed(int roomsUsed) {
+        this.roomsUsed = roomsUsed;
+    }
+
+    public int getNewRooms() {
+        return this.newRooms;
+    }
+
+    void setNewRooms(int newRooms) {
+        this.newRooms = newRooms;
+    }
+
+    public List<Item> getItems() {
+        return this.items;
+    }
+
+    public ImportReport getCommitted() {
+        return this.committed;
+    }
+
+    void setCommitted(ImportReport committed) {
+        this.committed = committed;
+    }
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Item {
+
+        private final int index;
+        private final Status status;
+        private final String roomName;
+        private final Integer newRoom;
+
+        Item(int index, Status status, String roomName, Integer newRoom) {
+            this.index = index;
+            this.status = status;
+            this.roomName = roomName;
+            this.newRoom = newRoom;
+        }
+
+        public int getIndex() {
+            return this.index;
+        }
+
+        public Status getStatus() {
+            return this.status;
+        }
+
+        /**
+         * @return the existing room, when status is ASSIGNED
+         */
+        public String getRoomName() {
+            return this.roomName;
+        }
+
+        /**
+         * @return which new room, numbered from 1, when status is NEW_ROOM
+         */
+        public Integer getNewRoom() {
+            return this.newRoom;
+        }
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Service;
+
+
+/**
+ * Day-ahead planning: puts a batch of appointment requests into as few
+ * rooms as {@link RoomPlanner} manages, around the appointments already
+ * booked in the batch's time span. Those are read with the same two range
+ * queries the occupancy bitmaps use, whatever the size of the batch.
+ */
+@Service
+public class SchedulePlanService {
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    AppointmentImportService appointmentImportService;
+
+    /**
+     * @param requests appointments whose room, if any, is ignored
+     * @return SchedulePlan
+     */
+    public SchedulePlan plan(List<Appointment> requests) {
+        List<String> roomNames = roomRepository.findAll(Sort.by("roomName")).stream()
+                .map(Room::getRoomName)
+                .collect(Collectors.toList());
+        Map<String, Integer> roomIndex = new HashMap<>();
+        for (int room = 0; room < roomNames.size(); room++) {
+            roomIndex.put(roomNames.get(room), room);
+        }
+
+        long[] startsAt = new long[requests.size()];
+        long[] finishesAt = new long[requests.size()];
+        LocalDateTime from = null;
+        LocalDateTime to = null;
+        for (int i = 0; i < requests.size(); i++) {
+            Appointment request = requests.get(i);
+            if (request.getStartsAt() == null || request.getFinishesAt() == null) {
+                continue;
+            }
+            startsAt[i] = toSeconds(request.getStartsAt());
+            finishesAt[i] = toSeconds(request.getFinishesAt());
+            if (startsAt[i] < finishesAt[i]) {
+                from = from == null || request.getStartsAt().isBefore(from) ? request.getStartsAt() : from;
+                to = to == null || request.getFinishesAt().isAfter(to) ? request.getFinishesAt() : to;
+            }
+        }
+
+        RoomPlanner planner = new RoomPlanner(roomNames.size());
+        if (from != null) {
+            List<RoomTimeRange> booked = new ArrayList<>(appointmentRepository.findRoomRangesRunningAt(from));
+            booked.addAll(appointmentRepository.findRoomRangesStartingBetween(from, to));
+            for (RoomTimeRange range : booked) {
+                Integer room = roomIndex.get(range.getRoomName());
+                if (room != null) {
+                    planner.reserve(room, toSeconds(range.getStartsAt()), toSeconds(range.getFinishesAt()));
+                }
+            }
+        }
+
+        int[] assigned = planner.assign(startsAt, finishesAt);
+
+        SchedulePlan plan = new SchedulePlan();
+        boolean[] used = new boolean[roomNames.size()];
+        int roomsUsed = 0;
+        int newRooms = 0;
+        for (int i = 0; i < assigned.length; i++) {
+            int room = assigned[i];
+            if (room == RoomPlanner.UNASSIGNED) {
+                plan.add(new SchedulePlan.Item(i, SchedulePlan.Status.INVALID, null, null));
+            } else if (room < roomNames.size()) {
+                if (!used[room]) {
+                    used[room] = true;
+                    roomsUsed++;
+                }
+                plan.add(new SchedulePlan.Item(i, SchedulePlan.Status.ASSIGNED, roomNames.get(room), null));
+            } else {
+                newRooms = Math.max(newRooms, room - roomNames.size() + 1);
+                plan.add(new SchedulePlan.Item(i, SchedulePlan.Status.NEW_ROOM, null, room - roomNames.size() + 1));
+            }
+        }
+        plan.setRoomsUsed(roomsUsed + newRooms);
+        plan.setNewRooms(newRooms);
+        return plan;
+    }
+
+    /**
+     * Plans the requests and, when every valid one fits in an existing room,
+     * books them in one transaction with the checks of the bulk import. The
+     * bookings are checked again because the calendar may have changed since
+     * the plan was read, and because doctors and patients are not planned.
+     *
+     * @param requests appointments whose room, if any, is ignored
+     * @return SchedulePlan, committed only when it needs no new room
+     */
+    public SchedulePlan commit(List<Appointment> requests) {
+        SchedulePlan plan = plan(requests);
+        if (plan.getNewRooms() > 0) {
+            return plan;
+        }
+
+        for (SchedulePlan.Item item : plan.getItems()) {
+            Appointment request = requests.get(item.getIndex());
+            request.setRoom(item.getRoomName() == null ? null : new Room(item.getRoomName()));
+        }
+        plan.setCommitted(appointmentImportService.importAll(requests));
+        return plan;
+    }
+
+    private static long toSeconds(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC);
+    }
+
+}
@@ -0,0 +1,88 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+
+/**
+ * The repository reads behind the long-poll and streaming endpoints, run on
+ * a small pool of their own instead of on request threads. However many
+ * readers are waiting, at most api.read.threads of them touch the database
+ * at once, which also keeps them from starving the connection pool that
+ * bookings need.
+ */
+@Service
+public class ScheduleReadService {
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Value("${api.read.threads:4}")
+    int threads;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "schedule-read-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        executor = Executors.newFixedThreadPool(threads, factory);
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+
+    /**
+     * @return the pool the reads run on, for work that follows them
+     */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * @param roomName
+     * @return the room; always a query by name, as misses must not be cached
+     * while other instances can create rooms (see RoomRepository.findByRoomName)
+     */
+    public CompletableFuture<Optional<Room>> findRoom(String roomName) {
+        return CompletableFuture.supplyAsync(() -> roomRepository.findByRoomName(roomName), executor);
+    }
+
+    /**
+     * @param room
+     * @param from
+     * @param limit
+     * @return up to limit appointments of the room that finish after from, in start order
+     */
+    public CompletableFuture<List<Appointment>> findRoomSchedule(Room room, LocalDateTime from, int limit) {
+        return CompletableFuture.supplyAsync(
+                () -> appointmentRepository.findRoomSchedule(room.getId(), from, PageRequest.of(0, limit)), executor);
+    }
+
+}
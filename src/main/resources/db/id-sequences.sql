@@ -0,0 +1,18 @@
+-- Appointment, Doctor, Patient and Room ids come from per-entity sequence tables
+-- (pooled-lo, 50 ids per round trip), which the schema update creates starting
+-- at 1. Before that, appointments, doctors and patients shared hibernate_sequence,
+-- one id per insert, and rooms were keyed by name (see db/room-surrogate-id.sql).
+-- Move each sequence past the ids already in its table, so existing rows keep
+-- their ids. Runs on every start and only ever raises a sequence.
+
+UPDATE appointment_seq SET next_val = (SELECT COALESCE(MAX(id), 0) + 1 FROM appointment)
+    WHERE next_val <= (SELECT COALESCE(MAX(id), 0) FROM appointment);
+
+UPDATE doctor_seq SET next_val = (SELECT COALESCE(MAX(id), 0) + 1 FROM doctors)
+    WHERE next_val <= (SELECT COALESCE(MAX(id), 0) FROM doctors);
+
+UPDATE patient_seq SET next_val = (SELECT COALESCE(MAX(id), 0) + 1 FROM patient)
+    WHERE next_val <= (SELECT COALESCE(MAX(id), 0) FROM patient);
+
+UPDATE room_seq SET next_val = (SELECT COALESCE(MAX(id), 0) + 1 FROM room)
+    WHERE next_val <= (SELECT COALESCE(MAX(id), 0) FROM room);
@@ -0,0 +1,28 @@
+-- One-off MySQL migration, to run by hand before the first start of the
+-- version where rooms have a numeric id. It is not in spring.sql.init: the
+-- schema update runs before it and cannot change a primary key.
+--
+-- room: the name stops being the primary key, a bigint id takes its place.
+-- appointment.room_id: the room's name becomes the room's id.
+-- On the next start the schema update adds back the foreign key, the
+-- (room_id, startsAt, finishesAt) index and a unique key on room_name, and
+-- db/id-sequences.sql moves room_seq past the ids numbered here.
+
+SET @fk = (SELECT CONSTRAINT_NAME FROM information_schema.KEY_COLUMN_USAGE
+           WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'appointment'
+             AND COLUMN_NAME = 'room_id' AND REFERENCED_TABLE_NAME = 'room');
+SET @drop_fk = IF(@fk IS NULL, 'DO 0', CONCAT('ALTER TABLE appointment DROP FOREIGN KEY ', @fk));
+PREPARE drop_fk FROM @drop_fk;
+EXECUTE drop_fk;
+DEALLOCATE PREPARE drop_fk;
+
+ALTER TABLE room ADD COLUMN id BIGINT;
+SET @room_id = 0;
+UPDATE room SET id = (@room_id := @room_id + 1) ORDER BY room_name;
+ALTER TABLE room DROP PRIMARY KEY, MODIFY id BIGINT NOT NULL, ADD PRIMARY KEY (id);
+
+ALTER TABLE appointment ADD COLUMN room_ref BIGINT;
+UPDATE appointment a JOIN room r ON r.room_name = a.room_id SET a.room_ref = r.id;
+DROP INDEX idx_appointment_room_time ON appointment;
+ALTER TABLE appointment DROP COLUMN room_id;
+ALTER TABLE appointment CHANGE room_ref room_id BIGINT;
@@ -0,0 +1,153 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.services.AppointmentBookingService;
+import com.example.demo.services.BookingResult;
+import com.example.demo.services.RoomOccupancy;
+import com.example.demo.services.RoomScheduleIndex;
+
+@SpringBootTest
+class AppointmentBookingConcurrencyTest {
+
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 40;
+
+    @Autowired
+    AppointmentBookingService bookingService;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    RoomOccupancy roomOccupancy;
+
+    @Autowired(required = false)
+    RoomScheduleIndex roomScheduleIndex;
+
+    @AfterEach
+    void cleanup() {
+        appointmentRepository.deleteAllInBatch();
+        patientRepository.deleteAllInBatch();
+        doctorRepository.deleteAllInBatch();
+        roomRepository.deleteAllInBatch();
+        roomOccupancy.clear();
+        if (roomScheduleIndex != null) {
+            roomScheduleIndex.clear();
+        }
+    }
+
+    @Test
+    void shouldNeverDoubleBookARoomUnderConcurrentLoad() throws Exception {
+        LocalDateTime day = LocalDateTime.of(2023, 4, 24, 8, 0);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final long seed = t;
+            Callable<Integer> worker = () -> {
+                Random random = new Random(seed);
+                int accepted = 0;
+                start.await();
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    LocalDateTime startsAt = day.plusMinutes(15L * random.nextInt(40));
+                    LocalDateTime finishesAt = startsAt.plusMinutes(15L * (1 + random.nextInt(4)));
+                    Appointment appointment = new Appointment(
+                            new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                            new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"),
+                            new Room("Dermatology"), startsAt, finishesAt);
+                    if (bookingService.book(appointment).getStatus() == BookingResult.Status.ACCEPTED) {
+                        accepted++;
+                    }
+                }
+                return accepted;
+            };
+            futures.add(executor.submit(worker));
+        }
+
+        start.countDown();
+        int accepted = 0;
+        for (Future<Integer> future : futures) {
+            accepted += future.get();
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        List<Appointment> booked = appointmentRepository.findAll().stream()
+                .sorted(Comparator.comparing(Appointment::getStartsAt))
+                .collect(Collectors.toList());
+
+        assertThat(accepted).isPositive();
+        assertThat(booked).hasSize(accepted);
+        assertThat(roomRepository.findAll()).hasSize(1);
+        for (int i = 1; i < booked.size(); i++) {
+            assertThat(booked.get(i).getStartsAt()).isAfterOrEqualTo(booked.get(i - 1).getFinishesAt());
+        }
+    }
+
+    @Test
+    void shouldAssignEachFreeRoomOnceUnderConcurrentLoad() throws Exception {
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 25, 10, 0);
+        roomRepository.save(new Room("Dermatology"));
+        roomRepository.save(new Room("Oncology"));
+        roomRepository.save(new Room("Radiology"));
+        roomOccupancy.clear();
+
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        List<Future<BookingResult>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return bookingService.book(new Appointment(null, null, null, startsAt, startsAt.plusMinutes(45)));
+            }));
+        }
+
+        start.countDown();
+        List<String> assigned = new ArrayList<>();
+        for (Future<BookingResult> future : futures) {
+            BookingResult result = future.get();
+            if (result.isAccepted()) {
+                assigned.add(result.getAppointment().getRoom().getRoomName());
+            } else {
+                assertThat(result.getReasons()).containsExactly(BookingResult.Reason.ROOM);
+            }
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(assigned).containsExactlyInAnyOrder("Dermatology", "Oncology", "Radiology");
+        assertThat(appointmentRepository.count()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.services.AppointmentBookingService;
+import com.example.demo.services.BookingResult;
+
+/**
+ * Two application contexts stand in for two nodes: each has its own
+ * connection pool and its own in-memory locks, and both share one
+ * file-backed H2 database.
+ */
+@TestInstance(Lifecycle.PER_CLASS)
+class AppointmentBookingDatabaseLockTest {
+
+    private static final String DATABASE = "target/h2/booking-lock-test";
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 30;
+
+    private ConfigurableApplicationContext node1;
+    private ConfigurableApplicationContext node2;
+
+    @BeforeAll
+    void startNodes() {
+        new File(DATABASE + ".mv.db").delete();
+        new File(DATABASE + ".trace.db").delete();
+        node1 = startNode();
+        node2 = startNode();
+    }
+
+    @AfterAll
+    void stopNodes() {
+        node2.close();
+        node1.close();
+    }
+
+    private ConfigurableApplicationContext startNode() {
+        return new SpringApplicationBuilder(TechhubApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:file:./" + DATABASE + ";LOCK_TIMEOUT=10000",
+                        "--booking.lock-mode=database");
+    }
+
+    @Test
+    void shouldNeverDoubleBookARoomAcrossNodes() throws Exception {
+        AppointmentBookingService[] nodes = {
+            node1.getBean(AppointmentBookingService.class),
+            node2.getBean(AppointmentBookingService.class)
+        };
+        LocalDateTime day = LocalDateTime.of(2023, 4, 24, 8, 0);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            final long seed = t;
+            final AppointmentBookingService node = nodes[t % nodes.length];
+            Callable<Integer> worker = () -> {
+                Random random = new Random(seed);
+                int accepted = 0;
+                start.await();
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    LocalDateTime startsAt = day.plusMinutes(15L * random.nextInt(40));
+                    LocalDateTime finishesAt = startsAt.plusMinutes(15L * (1 + random.nextInt(4)));
+                    Appointment appointment = new Appointment(
+                            new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                            new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"),
+                            new Room("Dermatology"), startsAt, finishesAt);
+                    if (node.book(appointment).getStatus() == BookingResult.Status.ACCEPTED) {
+                        accepted++;
+                    }
+                }
+                return accepted;
+            };
+            futures.add(executor.submit(worker));
+        }
+
+        start.countDown();
+        int accepted = 0;
+        for (Future<Integer> future : futures) {
+            accepted += future.get();
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        List<Appointment> booked = node1.getBean(AppointmentRepository.class).findAll().stream()
+                .sorted(Comparator.comparing(Appointment::getStartsAt))
+                .collect(Collectors.toList());
+
+        assertThat(accepted).isPositive();
+        assertThat(booked).hasSize(accepted);
+        assertThat(node2.getBean(RoomRepository.class).findAll()).hasSize(1);
+        for (int i = 1; i < booked.size(); i++) {
+            assertThat(booked.get(i).getStartsAt()).isAfterOrEqualTo(booked.get(i - 1).getFinishesAt());
+        }
+    }
+}
@@ -1,7 +1,11 @@
 package com.example.demo;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -9,8 +13,10 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Base64;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
@@ -19,31 +25,77 @@ import java.time.LocalDateTime;
 import java.time.format.*;
 
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
 import com.example.demo.controllers.AppointmentController;
 import com.example.demo.repositories.*;
 import com.example.demo.entities.*;
+import com.example.demo.services.AppointmentBookingService;
+import com.example.demo.services.AppointmentExportService;
+import com.example.demo.services.AppointmentImportService;
+import com.example.demo.services.BookingMetrics;
+import com.example.demo.services.CollectionVersions;
+import com.example.demo.services.RoomOccupancy;
+import com.example.demo.services.SchedulePlanService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 @WebMvcTest(AppointmentController.class)
+@Import({AppointmentBookingService.class, BookingMetrics.class, SimpleMeterRegistry.class})
 class AppointmentControllerUnitTest{
 
+    @MockBean
+    private CollectionVersions collectionVersions;
+
     @MockBean
     private AppointmentRepository appointmentRepository;
 
+    @MockBean
+    private RoomRepository roomRepository;
+
+    @MockBean
+    private PatientRepository patientRepository;
+
+    @MockBean
+    private DoctorRepository doctorRepository;
+
+    @MockBean
+    private PlatformTransactionManager transactionManager;
+
+    @MockBean
+    private AppointmentExportService appointmentExportService;
+
+    @MockBean
+    private AppointmentImportService appointmentImportService;
+
+    @MockBean
+    private RoomOccupancy roomOccupancy;
+
+    @MockBean
+    private SchedulePlanService schedulePlanService;
+
     @Autowired 
     private MockMvc mockMvc;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private AppointmentBookingService appointmentBookingService;
+
     @Test
     void shouldCreateAppointment() throws Exception {
         
@@ -60,10 +112,58 @@ class AppointmentControllerUnitTest{
 
         mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(appointment)))
-                .andExpect(status().isOk());
+                .andExpect(status().isCreated());
                 
     }
 
+    @Test
+    void shouldReturnCreatedAppointmentWithLocation() throws Exception {
+        
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+        
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        Appointment appointment = new Appointment(patient, doctor, room, startsAt, finishesAt);
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Location", "http://localhost/api/appointments/0"))
+                .andExpect(jsonPath("$.room.roomName").value("Dermatology"))
+                .andExpect(jsonPath("$.startsAt").value("19:30 24/04/2023"));
+    }
+
+    @Test
+    void shouldReturnRoomScheduleWhenRequested() throws Exception {
+        
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+        
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        Appointment appointment = new Appointment(patient, doctor, room, startsAt, finishesAt);
+
+        room.setId(1);
+        when(roomRepository.findByRoomName("Dermatology")).thenReturn(Optional.of(room));
+        when(appointmentRepository.findRoomSchedule(anyLong(), any(), any())).thenReturn(Collections.singletonList(appointment));
+        mockMvc.perform(post("/api/appointment?schedule=1000").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$[0].room.roomName").value("Dermatology"));
+
+        verify(appointmentRepository).findRoomSchedule(1L, startsAt.toLocalDate().atStartOfDay(),
+                PageRequest.of(0, 200));
+    }
+
     @Test
     void shouldNotCreateAppointment() throws Exception {
         
@@ -103,7 +203,7 @@ class AppointmentControllerUnitTest{
 
         mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(appointment)))
-                .andExpect(status().isOk());
+                .andExpect(status().isCreated());
                 
 
 
@@ -111,10 +211,15 @@ class AppointmentControllerUnitTest{
         List<Appointment> appointments = new ArrayList<Appointment>();
         appointments.add(appointment);
         
-        when(appointmentRepository.findAll()).thenReturn(appointments);
+        room.setId(1);
+        when(roomRepository.findByRoomName("Dermatology")).thenReturn(Optional.of(room));
+        when(appointmentRepository.findOverlapping(1L, startsAt, finishesAt)).thenReturn(appointments);
         mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(appointment2)))
-                .andExpect(status().isNotAcceptable());
+                .andExpect(status().isNotAcceptable())
+                .andExpect(header().string("Conflict-Reason", "room"))
+                .andExpect(jsonPath("$[0].room.roomName").value("Dermatology"))
+                .andExpect(jsonPath("$[0].startsAt").value("19:30 24/04/2023"));
                 
 
     }
@@ -142,7 +247,7 @@ class AppointmentControllerUnitTest{
 
         mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(appointment)))
-                .andExpect(status().isOk());
+                .andExpect(status().isCreated());
                 
 
 
@@ -150,14 +255,131 @@ class AppointmentControllerUnitTest{
         List<Appointment> appointments = new ArrayList<Appointment>();
         appointments.add(appointment);
         
-        when(appointmentRepository.findAll()).thenReturn(appointments);
+        room.setId(1);
+        room2.setId(2);
+        when(roomRepository.findByRoomName("Dermatology")).thenReturn(Optional.of(room));
+        when(roomRepository.findByRoomName("Oncology")).thenReturn(Optional.of(room2));
+        when(appointmentRepository.findOverlapping(1L, startsAt, finishesAt)).thenReturn(appointments);
         mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
                 .content(objectMapper.writeValueAsString(appointment2)))
-                .andExpect(status().isOk());
+                .andExpect(status().isCreated());
                 
 
     }
     
+    @Test
+    void shouldNotCreateAppointmentForBusyDoctorInOtherRoom() throws Exception {
+
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+        Room room2 = new Room("Oncology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+        
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        doctor.setId(1);
+        patient.setId(1);
+        patient2.setId(2);
+
+        Appointment appointment = new Appointment(patient, doctor, room, startsAt, finishesAt);
+        Appointment appointment2 = new Appointment(patient2, doctor, room2, startsAt, finishesAt);
+
+        List<Appointment> appointments = new ArrayList<Appointment>();
+        appointments.add(appointment);
+
+        when(appointmentRepository.findDoctorOverlapping(1, startsAt, finishesAt)).thenReturn(appointments);
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment2)))
+                .andExpect(status().isNotAcceptable())
+                .andExpect(header().string("Conflict-Reason", "doctor"))
+                .andExpect(jsonPath("$[0].room.roomName").value("Dermatology"));
+
+        verify(appointmentRepository).findPatientOverlapping(2, startsAt, finishesAt);
+    }
+
+    @Test
+    void shouldCreateAppointmentForBusyDoctorWhenPolicyIgnoresDoctors() throws Exception {
+
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Oncology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+        
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        doctor.setId(1);
+
+        Appointment appointment = new Appointment(patient, doctor, room, startsAt, finishesAt);
+
+        when(appointmentRepository.findDoctorOverlapping(1, startsAt, finishesAt))
+                .thenReturn(Collections.singletonList(new Appointment(patient, doctor, new Room("Dermatology"), startsAt, finishesAt)));
+        ReflectionTestUtils.setField(appointmentBookingService, "doctorPolicy", "ignore");
+        try {
+            mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(appointment)))
+                    .andExpect(status().isCreated());
+        } finally {
+            ReflectionTestUtils.setField(appointmentBookingService, "doctorPolicy", "reject");
+        }
+    }
+
+    @Test
+    void shouldAssignFreeRoomWhenRoomIsOmitted() throws Exception {
+
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+        
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        Appointment appointment = new Appointment(patient, doctor, null, startsAt, finishesAt);
+
+        Room dermatology = new Room("Dermatology");
+        dermatology.setId(1);
+        Room oncology = new Room("Oncology");
+        oncology.setId(2);
+
+        when(roomRepository.findAll(Sort.by("roomName"))).thenReturn(Arrays.asList(dermatology, oncology));
+        when(roomRepository.findByRoomName("Dermatology")).thenReturn(Optional.of(dermatology));
+        when(roomRepository.findByRoomName("Oncology")).thenReturn(Optional.of(oncology));
+        when(roomOccupancy.rankFreeRooms(Arrays.asList("Dermatology", "Oncology"), startsAt, finishesAt))
+                .thenReturn(Arrays.asList("Oncology", "Dermatology"));
+        when(appointmentRepository.findOverlapping(2L, startsAt, finishesAt))
+                .thenReturn(Collections.singletonList(new Appointment(null, null, new Room("Oncology"), startsAt, finishesAt)));
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.room.roomName").value("Dermatology"));
+    }
+
+    @Test
+    void shouldNotCreateAppointmentWhenNoRoomIsFree() throws Exception {
+
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+        
+        LocalDateTime startsAt= LocalDateTime.parse("19:30 24/04/2023", formatter);
+        LocalDateTime finishesAt = LocalDateTime.parse("20:30 24/04/2023", formatter);
+
+        Appointment appointment = new Appointment(patient, doctor, null, startsAt, finishesAt);
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isNotAcceptable())
+                .andExpect(header().string("Conflict-Reason", "room"));
+    }
+
     @Test
     void shouldGetNoAppointments() throws Exception{
         List<Appointment> appointments = new ArrayList<Appointment>();
@@ -190,12 +412,39 @@ class AppointmentControllerUnitTest{
         appointments.add(appointment);
         appointments.add(appointment2);
 
-        when(appointmentRepository.findAll()).thenReturn(appointments);
+        when(appointmentRepository.findPage(any(), any(), anyLong(), anyInt())).thenReturn(appointments);
         mockMvc.perform(get("/api/appointments"))
                 .andExpect(status().isOk());
                 
     }
 
+    @Test
+    void shouldPassFiltersAndCursorToRepository() throws Exception{
+        String cursor = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString("2023-04-24T19:00|7".getBytes(StandardCharsets.UTF_8));
+
+        mockMvc.perform(get("/api/appointments")
+                .param("room", "Dermatology")
+                .param("doctorId", "3")
+                .param("from", "08:00 24/04/2023")
+                .param("after", cursor)
+                .param("limit", "20"))
+                .andExpect(status().isNoContent());
+
+        ArgumentCaptor<AppointmentFilter> filter = ArgumentCaptor.forClass(AppointmentFilter.class);
+        verify(appointmentRepository).findPage(filter.capture(), eq(LocalDateTime.of(2023, 4, 24, 19, 0)), eq(7L), eq(21));
+        assertThat(filter.getValue().getRoom()).isEqualTo("Dermatology");
+        assertThat(filter.getValue().getDoctorId()).isEqualTo(3L);
+        assertThat(filter.getValue().getPatientId()).isNull();
+        assertThat(filter.getValue().getFrom()).isEqualTo(LocalDateTime.of(2023, 4, 24, 8, 0));
+    }
+
+    @Test
+    void shouldRejectMalformedCursor() throws Exception{
+        mockMvc.perform(get("/api/appointments").param("after", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     void shouldGetAppointmentById() throws Exception{
         Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
@@ -0,0 +1,90 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class AppointmentExportTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @AfterEach
+    void cleanup() {
+        appointmentRepository.deleteAllInBatch();
+        patientRepository.deleteAllInBatch();
+        doctorRepository.deleteAllInBatch();
+        roomRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void shouldStreamEveryAppointmentAsOneJsonLine() throws Exception {
+        LocalDateTime day = LocalDateTime.of(2023, 4, 24, 8, 0);
+        int count = 1201;
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Patient patient = patientRepository.save(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+            Doctor doctor = doctorRepository.save(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+            Room room = roomRepository.save(new Room("Dermatology"));
+            for (int i = count - 1; i >= 0; i--) {
+                appointmentRepository.save(new Appointment(patient, doctor, room, day.plusMinutes(10L * i), day.plusMinutes(10L * i + 10)));
+            }
+        });
+
+        MvcResult pending = mockMvc.perform(get("/api/appointments/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(pending))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(body).endsWith("\n");
+        String[] lines = body.split("\n");
+        assertThat(lines).hasSize(count);
+
+        JsonNode first = objectMapper.readTree(lines[0]);
+        assertThat(first.get("startsAt").asText()).isEqualTo("08:00 24/04/2023");
+        assertThat(first.get("room").get("roomName").asText()).isEqualTo("Dermatology");
+        assertThat(objectMapper.readTree(lines[count - 1]).get("doctor").get("firstName").asText()).isEqualTo("Perla");
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class AppointmentImportTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @AfterEach
+    void cleanup() {
+        appointmentRepository.deleteAllInBatch();
+        patientRepository.deleteAllInBatch();
+        doctorRepository.deleteAllInBatch();
+        roomRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void shouldReportEveryItemInRequestOrder() throws Exception {
+        Patient patient = new TransactionTemplate(transactionManager).execute(status -> {
+            Room room = roomRepository.save(new Room("Dermatology"));
+            Patient saved = patientRepository.save(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+            appointmentRepository.save(new Appointment(saved, null, room,
+                    LocalDateTime.of(2023, 4, 24, 12, 0), LocalDateTime.of(2023, 4, 24, 13, 0)));
+            return saved;
+        });
+
+        String body = "["
+                + item("Dermatology", "09:00", "10:00", patient.getId()) + ","
+                + item("Dermatology", "09:30", "10:30", patient.getId()) + ","
+                + item("Dermatology", "12:30", "13:30", patient.getId()) + ","
+                + item("Oncology", "09:30", "10:30", patient.getId()) + ","
+                + item("Oncology", "11:00", "10:00", patient.getId()) + ","
+                + item("Dermatology", "10:00", "11:00", patient.getId())
+                + "]";
+
+        mockMvc.perform(post("/api/appointments/bulk").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(2))
+                .andExpect(jsonPath("$.rejected").value(4))
+                .andExpect(jsonPath("$.items[0].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$.items[0].id").isNumber())
+                .andExpect(jsonPath("$.items[1].status").value("CONFLICT"))
+                .andExpect(jsonPath("$.items[1].reason").value("room conflict with item 0"))
+                .andExpect(jsonPath("$.items[2].status").value("CONFLICT"))
+                .andExpect(jsonPath("$.items[2].reason").value("room conflict with an existing appointment"))
+                .andExpect(jsonPath("$.items[3].status").value("CONFLICT"))
+                .andExpect(jsonPath("$.items[3].reason").value("patient conflict with item 0"))
+                .andExpect(jsonPath("$.items[4].status").value("INVALID"))
+                .andExpect(jsonPath("$.items[5].status").value("ACCEPTED"))
+                .andExpect(jsonPath("$.items[5].index").value(5));
+
+        assertThat(appointmentRepository.count()).isEqualTo(3);
+        assertThat(roomRepository.count()).isEqualTo(1);
+        assertThat(patientRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRejectConflictsAcrossChunks() throws Exception {
+        StringBuilder body = new StringBuilder("[");
+        int count = 2500;
+        for (int i = 0; i < count; i++) {
+            String hour = String.format("%02d:00", i % 2 == 0 ? 9 : 10);
+            String end = String.format("%02d:00", i % 2 == 0 ? 10 : 11);
+            body.append(i == 0 ? "" : ",").append(item("Room " + (i / 2), hour, end, 0));
+        }
+        // same slot as item 0, in the last chunk
+        body.append(",").append(item("Room 0", "09:15", "09:45", 0)).append("]");
+
+        mockMvc.perform(post("/api/appointments/bulk").contentType(MediaType.APPLICATION_JSON).content(body.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accepted").value(count))
+                .andExpect(jsonPath("$.rejected").value(1))
+                .andExpect(jsonPath("$.items[" + count + "].reason").value("room conflict with an existing appointment"));
+
+        assertThat(appointmentRepository.count()).isEqualTo(count);
+    }
+
+    @Test
+    void shouldRejectMalformedBody() throws Exception {
+        mockMvc.perform(post("/api/appointments/bulk").contentType(MediaType.APPLICATION_JSON).content("{\"room\": 1}"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(post("/api/appointments/bulk").contentType(MediaType.APPLICATION_JSON).content("[{\"startsAt\": \"tomorrow\"}]"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldRejectNonObjectElements() throws Exception {
+        for (String element : new String[] {"1", "\"text\"", "null", "[]"}) {
+            String body = "[" + item("Dermatology", "09:00", "10:00", 0) + "," + element + ","
+                    + item("Oncology", "09:00", "10:00", 0) + "]";
+
+            mockMvc.perform(post("/api/appointments/bulk").contentType(MediaType.APPLICATION_JSON).content(body))
+                    .andExpect(status().isBadRequest());
+        }
+
+        assertThat(appointmentRepository.count()).isZero();
+    }
+
+    private String item(String roomName, String startsAt, String finishesAt, long patientId) {
+        return "{\"room\":{\"roomName\":\"" + roomName + "\"},"
+                + (patientId == 0 ? "" : "\"patient\":{\"id\":" + patientId + "},")
+                + "\"startsAt\":\"" + startsAt + " 24/04/2023\","
+                + "\"finishesAt\":\"" + finishesAt + " 24/04/2023\"}";
+    }
+}
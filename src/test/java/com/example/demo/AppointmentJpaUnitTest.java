@@ -1,6 +1,8 @@
 package com.example.demo;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -8,16 +10,19 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
 
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
 
 import com.example.demo.repositories.*;
 import com.example.demo.entities.*;
+import com.example.demo.services.FreeSlotService;
 
 
 @DataJpaTest
 @AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import(FreeSlotService.class)
 class AppointmentJpaUnitTest {
 
     @Autowired
@@ -35,6 +40,9 @@ class AppointmentJpaUnitTest {
     @Autowired
     RoomRepository repoRooms;
 
+    @Autowired
+    FreeSlotService freeSlotService;
+
     @Test
     void should_find_no_appointments_if_repository_is_empty(){
         Iterable<Appointment> appointments = repoAppointments.findAll();
@@ -258,4 +266,155 @@ class AppointmentJpaUnitTest {
         assertThat(appointments).isEmpty();
     }
     
+    @Test
+    void should_find_only_overlapping_appointments_in_same_room(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room1 = new Room("Dermatology");
+        Room room2 = new Room("Oncology");
+
+        LocalDateTime nine = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+        entityManager.persist(patient);
+        entityManager.persist(doctor);
+        entityManager.persist(room1);
+        entityManager.persist(room2);
+
+        Appointment before = new Appointment(patient, doctor, room1, nine.minusHours(1), nine);
+        Appointment during = new Appointment(patient, doctor, room1, nine.plusMinutes(30), nine.plusMinutes(90));
+        Appointment otherRoom = new Appointment(patient, doctor, room2, nine, nine.plusHours(1));
+
+        entityManager.persist(before);
+        entityManager.persist(during);
+        entityManager.persist(otherRoom);
+
+        assertThat(repoAppointments.findOverlapping(room1.getId(), nine, nine.plusHours(1))).containsExactly(during);
+        assertThat(repoAppointments.findOverlapping(room1.getId(), nine.minusMinutes(30), nine.plusMinutes(30))).containsExactly(before);
+        assertThat(repoAppointments.findOverlapping(room1.getId(), nine.plusHours(2), nine.plusHours(3))).isEmpty();
+    }
+
+    @Test
+    void should_find_overlapping_appointments_of_doctor_and_patient(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Doctor doctor2 = new Doctor ("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
+        Room room1 = new Room("Dermatology");
+        Room room2 = new Room("Oncology");
+
+        LocalDateTime nine = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+        entityManager.persist(patient);
+        entityManager.persist(patient2);
+        entityManager.persist(doctor);
+        entityManager.persist(doctor2);
+        entityManager.persist(room1);
+        entityManager.persist(room2);
+
+        Appointment dermatology = new Appointment(patient, doctor, room1, nine, nine.plusHours(1));
+        Appointment oncology = new Appointment(patient2, doctor, room2, nine.plusHours(1), nine.plusHours(2));
+
+        entityManager.persist(dermatology);
+        entityManager.persist(oncology);
+
+        assertThat(repoAppointments.findDoctorOverlapping(doctor.getId(), nine.plusMinutes(30), nine.plusMinutes(90))).containsExactlyInAnyOrder(dermatology, oncology);
+        assertThat(repoAppointments.findDoctorOverlapping(doctor2.getId(), nine, nine.plusHours(2))).isEmpty();
+        assertThat(repoAppointments.findPatientOverlapping(patient.getId(), nine.plusMinutes(30), nine.plusMinutes(90))).containsExactly(dermatology);
+        assertThat(repoAppointments.findPatientOverlapping(patient2.getId(), nine, nine.plusHours(1))).isEmpty();
+    }
+
+    @Test
+    void should_find_earliest_free_slots_of_room_and_doctor(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room1 = new Room("Dermatology");
+        Room room2 = new Room("Oncology");
+
+        LocalDateTime eight = LocalDateTime.of(2023, 4, 24, 8, 0);
+
+        entityManager.persist(patient);
+        entityManager.persist(doctor);
+        entityManager.persist(room1);
+        entityManager.persist(room2);
+
+        // Dermatology: 07:30-08:30, 09:00-09:20, 10:00-11:00
+        entityManager.persist(new Appointment(patient, doctor, room1, eight.minusMinutes(30), eight.plusMinutes(30)));
+        entityManager.persist(new Appointment(patient, doctor, room1, eight.plusHours(1), eight.plusMinutes(80)));
+        entityManager.persist(new Appointment(patient, null, room1, eight.plusHours(2), eight.plusHours(3)));
+        // the doctor is also in Oncology 09:20-09:40
+        entityManager.persist(new Appointment(patient, doctor, room2, eight.plusMinutes(80), eight.plusMinutes(100)));
+
+        List<TimeRange> room = freeSlotService.findRoomFreeSlots(room1.getId(), Duration.ofMinutes(30), eight, eight.plusHours(4), 10);
+        assertThat(room).extracting(TimeRange::getStartsAt).containsExactly(eight.plusMinutes(30), eight.plusMinutes(80), eight.plusHours(3));
+        assertThat(room).extracting(TimeRange::getFinishesAt).containsExactly(eight.plusHours(1), eight.plusHours(2), eight.plusHours(4));
+
+        List<TimeRange> longOnly = freeSlotService.findRoomFreeSlots(room1.getId(), Duration.ofMinutes(40), eight, eight.plusHours(4), 1);
+        assertThat(longOnly).extracting(TimeRange::getStartsAt).containsExactly(eight.plusMinutes(80));
+
+        List<TimeRange> doctorSlots = freeSlotService.findDoctorFreeSlots(doctor.getId(), Duration.ofMinutes(20), eight, eight.plusHours(2), 10);
+        assertThat(doctorSlots).extracting(TimeRange::getStartsAt).containsExactly(eight.plusMinutes(30), eight.plusMinutes(100));
+    }
+
+    @Test
+    void should_find_room_ranges_running_at_and_starting_in_a_day(){
+        Room room1 = new Room("Dermatology");
+        Room room2 = new Room("Oncology");
+
+        LocalDateTime midnight = LocalDateTime.of(2023, 4, 24, 0, 0);
+
+        entityManager.persist(room1);
+        entityManager.persist(room2);
+
+        entityManager.persist(new Appointment(null, null, room1, midnight.minusHours(3), midnight.minusHours(2)));
+        entityManager.persist(new Appointment(null, null, room1, midnight.minusHours(1), midnight.plusMinutes(30)));
+        entityManager.persist(new Appointment(null, null, room1, midnight.plusHours(9), midnight.plusHours(10)));
+        entityManager.persist(new Appointment(null, null, room2, midnight.minusHours(1), midnight));
+        entityManager.persist(new Appointment(null, null, room2, midnight.plusDays(1), midnight.plusDays(1).plusHours(1)));
+
+        List<RoomTimeRange> running = repoAppointments.findRoomRangesRunningAt(midnight);
+        assertThat(running).extracting(RoomTimeRange::getRoomName).containsExactly("Dermatology");
+        assertThat(running).extracting(RoomTimeRange::getStartsAt).containsExactly(midnight.minusHours(1));
+
+        List<RoomTimeRange> starting = repoAppointments.findRoomRangesStartingBetween(midnight, midnight.plusDays(1));
+        assertThat(starting).extracting(RoomTimeRange::getStartsAt).containsExactly(midnight.plusHours(9));
+    }
+
+    @Test
+    void should_page_appointments_by_start_and_id(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room1 = new Room("Dermatology");
+        Room room2 = new Room("Oncology");
+
+        LocalDateTime nine = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+        entityManager.persist(patient);
+        entityManager.persist(doctor);
+        entityManager.persist(room1);
+        entityManager.persist(room2);
+
+        Appointment first = new Appointment(patient, doctor, room1, nine, nine.plusHours(1));
+        Appointment sameStart = new Appointment(patient, doctor, room2, nine, nine.plusHours(1));
+        Appointment later = new Appointment(patient, doctor, room1, nine.plusHours(2), nine.plusHours(3));
+
+        entityManager.persist(later);
+        entityManager.persist(first);
+        entityManager.persist(sameStart);
+
+        AppointmentFilter all = new AppointmentFilter();
+        List<Appointment> page1 = repoAppointments.findPage(all, null, 0, 2);
+        assertThat(page1).extracting(Appointment::getStartsAt).containsExactly(nine, nine);
+
+        Appointment last = page1.get(1);
+        List<Appointment> page2 = repoAppointments.findPage(all, last.getStartsAt(), last.getId(), 2);
+        assertThat(page2).containsExactly(later);
+
+        AppointmentFilter byRoom = new AppointmentFilter();
+        byRoom.setRoom("Dermatology");
+        byRoom.setFrom(nine.plusMinutes(30));
+        assertThat(repoAppointments.findPage(byRoom, null, 0, 10)).containsExactly(first, later);
+
+        byRoom.setTo(nine.plusHours(2));
+        assertThat(repoAppointments.findPage(byRoom, null, 0, 10)).containsExactly(first);
+    }
 }
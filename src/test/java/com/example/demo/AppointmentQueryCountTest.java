@@ -0,0 +1,121 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+class AppointmentQueryCountTest {
+
+    private static final int COUNT = 1000;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    private Statistics statistics;
+
+    private long lastId;
+
+    @BeforeEach
+    void seed() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // a distinct patient and doctor per appointment, so nothing is served from the persistence context
+        LocalDateTime day = LocalDateTime.of(2023, 4, 24, 8, 0);
+        lastId = new TransactionTemplate(transactionManager).execute(status -> {
+            Appointment last = null;
+            for (int i = 0; i < COUNT; i++) {
+                Patient patient = patientRepository.save(new Patient("Patient", "P" + i, 30, "p" + i + "@email.com"));
+                Doctor doctor = doctorRepository.save(new Doctor("Doctor", "D" + i, 40, "d" + i + "@hospital.accwe"));
+                Room room = roomRepository.save(new Room("Room " + i));
+                last = appointmentRepository.save(new Appointment(patient, doctor, room, day, day.plusMinutes(30)));
+            }
+            return last.getId();
+        });
+    }
+
+    @AfterEach
+    void cleanup() {
+        appointmentRepository.deleteAllInBatch();
+        patientRepository.deleteAllInBatch();
+        doctorRepository.deleteAllInBatch();
+        roomRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void shouldListAppointmentsWithOneStatement() throws Exception {
+        statistics.clear();
+
+        mockMvc.perform(get("/api/appointments").param("limit", String.valueOf(COUNT)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(COUNT))
+                .andExpect(jsonPath("$[999].patient.lastName").exists())
+                .andExpect(jsonPath("$[999].doctor.lastName").exists())
+                .andExpect(jsonPath("$[999].room.roomName").exists());
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldLoadOneAppointmentWithOneStatement() throws Exception {
+        statistics.clear();
+
+        mockMvc.perform(get("/api/appointments/" + lastId))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.patient.lastName").value("P999"))
+                .andExpect(jsonPath("$.doctor.lastName").value("D999"))
+                .andExpect(jsonPath("$.room.roomName").value("Room 999"));
+
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldLoadEveryAppointmentWithOneStatement() {
+        statistics.clear();
+
+        List<Appointment> appointments = appointmentRepository.findAll();
+
+        assertThat(appointments).hasSize(COUNT);
+        assertThat(appointments).allSatisfy(appointment -> assertThat(appointment.getDoctor().getLastName()).isNotNull());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+}
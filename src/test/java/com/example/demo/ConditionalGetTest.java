@@ -0,0 +1,143 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.services.AppointmentBookingService;
+import com.example.demo.services.RoomOccupancy;
+
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "api.etag.enabled=true"})
+@AutoConfigureMockMvc
+class ConditionalGetTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    AppointmentBookingService appointmentBookingService;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    RoomOccupancy roomOccupancy;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setup() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        roomRepository.save(new Room("Dermatology"));
+    }
+
+    @AfterEach
+    void cleanup() {
+        appointmentRepository.deleteAllInBatch();
+        patientRepository.deleteAllInBatch();
+        doctorRepository.deleteAllInBatch();
+        roomRepository.deleteAllInBatch();
+        roomOccupancy.clear();
+    }
+
+    @Test
+    void shouldAnswerNotModifiedWithoutTouchingTheDatabase() throws Exception {
+        String etag = mockMvc.perform(get("/api/rooms"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.LAST_MODIFIED))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        assertThat(etag).startsWith("\"").endsWith("\"");
+
+        statistics.clear();
+        mockMvc.perform(get("/api/rooms").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag))
+                .andExpect(content().string(""));
+        mockMvc.perform(get("/api/rooms/Dermatology").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    @Test
+    void shouldChangeTheEtagWhenTheCollectionChanges() throws Exception {
+        String rooms = etagOf("/api/rooms");
+        String doctors = etagOf("/api/doctors");
+
+        mockMvc.perform(post("/api/room").contentType(MediaType.APPLICATION_JSON).content("{\"roomName\":\"Oncology\"}"))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/api/rooms").header(HttpHeaders.IF_NONE_MATCH, rooms))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+        mockMvc.perform(get("/api/doctors").header(HttpHeaders.IF_NONE_MATCH, doctors))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void shouldChangeTheAppointmentsEtagOnBookingAndCancel() throws Exception {
+        String before = etagOf("/api/appointments");
+
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0);
+        Appointment booked = appointmentBookingService.book(
+                new Appointment(null, null, new Room("Dermatology"), startsAt, startsAt.plusHours(1))).getAppointment();
+        String afterBooking = etagOf("/api/appointments");
+        assertThat(afterBooking).isNotEqualTo(before);
+
+        mockMvc.perform(get("/api/appointments/" + booked.getId()).header(HttpHeaders.IF_NONE_MATCH, afterBooking))
+                .andExpect(status().isNotModified());
+
+        mockMvc.perform(delete("/api/appointments/" + booked.getId())).andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/appointments").header(HttpHeaders.IF_NONE_MATCH, afterBooking))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    void shouldIgnoreIfModifiedSince() throws Exception {
+        etagOf("/api/rooms");
+        mockMvc.perform(post("/api/room").contentType(MediaType.APPLICATION_JSON).content("{\"roomName\":\"Oncology\"}"))
+                .andExpect(status().isCreated());
+
+        // a date in the same second as the write, or later, must not hide it
+        mockMvc.perform(get("/api/rooms").header(HttpHeaders.IF_MODIFIED_SINCE, System.currentTimeMillis() + 3600_000))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    private String etagOf(String path) throws Exception {
+        return mockMvc.perform(get(path)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.demo.repositories.*;
+import com.example.demo.services.DatasetGenerator;
+import com.example.demo.services.RoomOccupancy;
+
+@SpringBootTest
+class DatasetGeneratorTest {
+
+    @Autowired
+    DatasetGenerator datasetGenerator;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    RoomOccupancy roomOccupancy;
+
+    @AfterEach
+    void cleanup() {
+        appointmentRepository.deleteAllInBatch();
+        patientRepository.deleteAllInBatch();
+        doctorRepository.deleteAllInBatch();
+        roomRepository.deleteAllInBatch();
+        roomOccupancy.clear();
+    }
+
+    @Test
+    void shouldGenerateTheSameAppointmentsForTheSameSeed() {
+        long generated = datasetGenerator.generate(spec());
+        List<Map<String, Object>> first = appointments();
+        cleanup();
+        datasetGenerator.generate(spec());
+
+        assertThat(first).hasSize((int) generated).isEqualTo(appointments());
+        assertThat(patientRepository.count()).isEqualTo(300);
+        assertThat(doctorRepository.count()).isEqualTo(8);
+        assertThat(roomRepository.count()).isEqualTo(10);
+    }
+
+    @Test
+    void shouldNotOverlapRoomsDoctorsOrPatients() {
+        datasetGenerator.generate(spec());
+
+        Integer overlaps = jdbcTemplate.queryForObject(
+                "select count(*) from appointment a join appointment b on a.id < b.id"
+                        + " and a.starts_at < b.finishes_at and b.starts_at < a.finishes_at"
+                        + " and (a.room_id = b.room_id or a.doctor_id = b.doctor_id or a.patient_id = b.patient_id)",
+                Integer.class);
+        assertThat(overlaps).isZero();
+    }
+
+    @Test
+    void shouldBookPopularRoomsMoreOnWeekdayWorkingHours() {
+        datasetGenerator.generate(spec());
+
+        assertThat(countInRoom("Room-0")).isGreaterThan(2 * countInRoom("Room-9"));
+        for (Map<String, Object> appointment : appointments()) {
+            LocalDateTime startsAt = ((Timestamp) appointment.get("STARTS_AT")).toLocalDateTime();
+            LocalDateTime finishesAt = ((Timestamp) appointment.get("FINISHES_AT")).toLocalDateTime();
+            assertThat(startsAt.getHour()).isGreaterThanOrEqualTo(8);
+            assertThat(finishesAt.toLocalTime()).isBeforeOrEqualTo(LocalTime.of(18, 0));
+            assertThat(startsAt.getDayOfWeek().getValue()).isLessThanOrEqualTo(5);
+        }
+    }
+
+    @Test
+    void shouldRefuseADatabaseWithAppointments() {
+        datasetGenerator.generate(spec());
+
+        assertThatThrownBy(() -> datasetGenerator.generate(spec())).isInstanceOf(IllegalStateException.class);
+    }
+
+    private DatasetGenerator.Spec spec() {
+        DatasetGenerator.Spec spec = new DatasetGenerator.Spec();
+        spec.setSeed(7);
+        spec.setRooms(10);
+        spec.setDoctors(8);
+        spec.setPatients(300);
+        spec.setDays(5);
+        spec.setStartDate(LocalDate.of(2023, 4, 22));
+        spec.setBatchSize(100);
+        return spec;
+    }
+
+    /**
+     * By natural keys, as the ids differ from one run to the next.
+     */
+    private List<Map<String, Object>> appointments() {
+        return jdbcTemplate.queryForList(
+                "select r.room_name, a.starts_at, a.finishes_at, d.email as doctor, p.email as patient"
+                        + " from appointment a join room r on a.room_id = r.id"
+                        + " left join doctors d on a.doctor_id = d.id left join patient p on a.patient_id = p.id"
+                        + " order by r.room_name, a.starts_at");
+    }
+
+    private int countInRoom(String roomName) {
+        return jdbcTemplate.queryForObject(
+                "select count(*) from appointment a join room r on a.room_id = r.id where r.room_name = ?",
+                Integer.class, roomName);
+    }
+}
@@ -10,32 +10,56 @@ import com.example.demo.entities.Room;
 import com.example.demo.repositories.DoctorRepository;
 import com.example.demo.repositories.PatientRepository;
 import com.example.demo.repositories.RoomRepository;
+import com.example.demo.repositories.TimeRange;
+import com.example.demo.services.AvailabilityMatrix;
+import com.example.demo.services.CollectionVersions;
+import com.example.demo.services.FreeSlotService;
+import com.example.demo.services.RoomOccupancy;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 
 @WebMvcTest(DoctorController.class)
 class DoctorControllerUnitTest {
 
+    @MockBean
+    private CollectionVersions collectionVersions;
+
     @MockBean
     private DoctorRepository doctorRepository;
 
+    @MockBean
+    private FreeSlotService freeSlotService;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -116,20 +140,20 @@ class DoctorControllerUnitTest {
     }
 
     /**
-     * Method under test: {@link DoctorController#getAllDoctors()}
+     * Method under test: {@link DoctorController#getAllDoctors(String, Integer)}
      */
     @Test
     void testGetAllDoctorsNoContent() throws Exception {
         List<Doctor> doctors = new ArrayList<>();
 
-        when(doctorRepository.findAll()).thenReturn(doctors);
+        when(doctorRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, 101))).thenReturn(doctors);
 
         mockMvc.perform(get("/api/doctors"))
                 .andExpect(status().isNoContent());
     }
 
     /**
-     * Method under test: {@link DoctorController#getAllDoctors()}
+     * Method under test: {@link DoctorController#getAllDoctors(String, Integer)}
      */
     @Test
     void testGetAllDoctors() throws Exception {
@@ -138,7 +162,7 @@ class DoctorControllerUnitTest {
         List<Doctor> doctors = new ArrayList<>();
         doctors.add(doctor);
 
-        when(doctorRepository.findAll()).thenReturn(doctors);
+        when(doctorRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, 101))).thenReturn(doctors);
 
         mockMvc.perform(get("/api/doctors"))
                 .andExpect(status().isOk());
@@ -173,12 +197,43 @@ class DoctorControllerUnitTest {
                 .andExpect(status().isNotFound());
     }
 
+    /**
+     * Method under test: {@link DoctorController#getDoctorFreeSlots(long, int, LocalDateTime, LocalDateTime, Integer)}
+     */
+    @Test
+    void testGetDoctorFreeSlotsRejectsBadWindow() throws Exception {
+        mockMvc.perform(get("/api/doctors/1/free-slots")
+                        .param("duration", "30")
+                        .param("from", "10:00 24/04/2023")
+                        .param("to", "09:00 24/04/2023"))
+                .andExpect(status().isBadRequest());
+
+        mockMvc.perform(get("/api/doctors/1/free-slots")
+                        .param("duration", "0")
+                        .param("from", "10:00 24/04/2023"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Method under test: {@link DoctorController#getDoctorFreeSlots(long, int, LocalDateTime, LocalDateTime, Integer)}
+     */
+    @Test
+    void testGetDoctorFreeSlotsNotFound() throws Exception {
+        mockMvc.perform(get("/api/doctors/1/free-slots")
+                        .param("duration", "30")
+                        .param("from", "10:00 24/04/2023"))
+                .andExpect(status().isNotFound());
+    }
+
 }
 
 
 @WebMvcTest(PatientController.class)
 class PatientControllerUnitTest {
 
+    @MockBean
+    private CollectionVersions collectionVersions;
+
     @MockBean
     private PatientRepository patientRepository;
 
@@ -260,20 +315,20 @@ class PatientControllerUnitTest {
     }
 
     /**
-     * Method under test: {@link PatientController#getAllPatients()}
+     * Method under test: {@link PatientController#getAllPatients(String, Integer)}
      */
     @Test
     void testGetAllPatientsNoContent() throws Exception {
         List<Patient> patients = new ArrayList<>();
 
-        when(patientRepository.findAll()).thenReturn(patients);
+        when(patientRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, 101))).thenReturn(patients);
 
         mockMvc.perform(get("/api/patients"))
                 .andExpect(status().isNoContent());
     }
 
     /**
-     * Method under test: {@link PatientController#getAllPatients()}
+     * Method under test: {@link PatientController#getAllPatients(String, Integer)}
      */
     @Test
     void testGetAllPatients() throws Exception {
@@ -282,7 +337,7 @@ class PatientControllerUnitTest {
         List<Patient> patients = new ArrayList<>();
         patients.add(patient);
 
-        when(patientRepository.findAll()).thenReturn(patients);
+        when(patientRepository.findByIdGreaterThanOrderByIdAsc(0, PageRequest.of(0, 101))).thenReturn(patients);
 
         mockMvc.perform(get("/api/patients"))
                 .andExpect(status().isOk());
@@ -323,9 +378,18 @@ class PatientControllerUnitTest {
 @WebMvcTest(RoomController.class)
 class RoomControllerUnitTest {
 
+    @MockBean
+    private CollectionVersions collectionVersions;
+
     @MockBean
     private RoomRepository roomRepository;
 
+    @MockBean
+    private FreeSlotService freeSlotService;
+
+    @MockBean
+    private RoomOccupancy roomOccupancy;
+
     @Autowired
     private MockMvc mockMvc;
 
@@ -338,6 +402,7 @@ class RoomControllerUnitTest {
      */
     private Room createSampleRoom() {
         Room room = new Room("Sala 01");
+        room.setId(1);
         return room;
     }
 
@@ -399,20 +464,20 @@ class RoomControllerUnitTest {
     }
 
     /**
-     * Method under test: {@link RoomController#getAllRooms()}
+     * Method under test: {@link RoomController#getAllRooms(String, Integer)}
      */
     @Test
     void testGetAllRoomsNoContent() throws Exception {
         List<Room> rooms = new ArrayList<>();
 
-        when(roomRepository.findAll()).thenReturn(rooms);
+        when(roomRepository.findByRoomNameGreaterThanOrderByRoomNameAsc("", PageRequest.of(0, 101))).thenReturn(rooms);
 
         mockMvc.perform(get("/api/rooms"))
                 .andExpect(status().isNoContent());
     }
 
     /**
-     * Method under test: {@link RoomController#getAllRooms()}
+     * Method under test: {@link RoomController#getAllRooms(String, Integer)}
      */
     @Test
     void testGetAllRooms() throws Exception {
@@ -421,12 +486,39 @@ class RoomControllerUnitTest {
         List<Room> rooms = new ArrayList<>();
         rooms.add(room);
 
-        when(roomRepository.findAll()).thenReturn(rooms);
+        when(roomRepository.findByRoomNameGreaterThanOrderByRoomNameAsc("", PageRequest.of(0, 101))).thenReturn(rooms);
 
         mockMvc.perform(get("/api/rooms"))
                 .andExpect(status().isOk());
     }
 
+    /**
+     * Method under test: {@link RoomController#getAllRooms(String, Integer)}
+     */
+    @Test
+    void testGetAllRoomsNextPage() throws Exception {
+        List<Room> rooms = new ArrayList<>();
+        rooms.add(new Room("Sala 01"));
+        rooms.add(new Room("Sala 02"));
+
+        when(roomRepository.findByRoomNameGreaterThanOrderByRoomNameAsc("", PageRequest.of(0, 2))).thenReturn(rooms);
+        when(roomRepository.findByRoomNameGreaterThanOrderByRoomNameAsc("Sala 01", PageRequest.of(0, 2))).thenReturn(rooms.subList(1, 2));
+
+        String link = mockMvc.perform(get("/api/rooms?limit=1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].roomName").value("Sala 01"))
+                .andReturn().getResponse().getHeader("Link");
+
+        assertThat(link).endsWith("; rel=\"next\"");
+        String next = link.substring(1, link.indexOf('>'));
+
+        mockMvc.perform(get(next))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].roomName").value("Sala 02"))
+                .andExpect(header().doesNotExist("Link"));
+    }
+
     /**
      * Method under test: {@link RoomController#getRoomByRoomName(String)}
      */
@@ -457,4 +549,76 @@ class RoomControllerUnitTest {
                 .andExpect(status().isNotFound());
     }
 
+    /**
+     * Method under test: {@link RoomController#getRoomFreeSlots(String, int, LocalDateTime, LocalDateTime, Integer)}
+     */
+    @Test
+    void testGetRoomFreeSlots() throws Exception {
+        Room room = createSampleRoom();
+        LocalDateTime from = LocalDateTime.of(2023, 4, 24, 8, 0);
+
+        when(roomRepository.findByRoomName(room.getRoomName())).thenReturn(Optional.of(room));
+        when(freeSlotService.findRoomFreeSlots(room.getId(), Duration.ofMinutes(45), from, from.plusWeeks(1), 100))
+                .thenReturn(Collections.singletonList(new TimeRange(from, from.plusHours(1))));
+
+        mockMvc.perform(get("/api/rooms/Sala 01/free-slots")
+                        .param("duration", "45")
+                        .param("from", "08:00 24/04/2023")
+                        .param("limit", "1000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].startsAt").value("08:00 24/04/2023"))
+                .andExpect(jsonPath("$[0].finishesAt").value("09:00 24/04/2023"));
+
+        verify(freeSlotService).findRoomFreeSlots(room.getId(), Duration.ofMinutes(45), from, from.plusWeeks(1), 100);
+    }
+
+    /**
+     * Method under test: {@link RoomController#getAvailability(LocalDate, Integer, LocalTime, LocalTime)}
+     */
+    @Test
+    void testGetAvailability() throws Exception {
+        LocalDate day = LocalDate.of(2023, 4, 24);
+        Map<String, boolean[]> rooms = new LinkedHashMap<>();
+        rooms.put("Sala 01", new boolean[] {true, false});
+
+        when(roomRepository.findAll(Sort.by("roomName"))).thenReturn(Arrays.asList(createSampleRoom()));
+        when(roomOccupancy.getAvailability(Arrays.asList("Sala 01"), day, 600, 660, 30)).thenReturn(
+                new AvailabilityMatrix(day, 30, Arrays.asList(LocalTime.of(10, 0), LocalTime.of(10, 30)), rooms));
+
+        mockMvc.perform(get("/api/availability")
+                        .param("day", "24/04/2023")
+                        .param("from", "10:00")
+                        .param("to", "11:00"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.day").value("24/04/2023"))
+                .andExpect(jsonPath("$.slots[1]").value("10:30"))
+                .andExpect(jsonPath("$.rooms['Sala 01'][0]").value(true))
+                .andExpect(jsonPath("$.rooms['Sala 01'][1]").value(false));
+
+        mockMvc.perform(get("/api/availability")
+                        .param("day", "24/04/2023")
+                        .param("from", "11:00")
+                        .param("to", "10:00"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Method under test: {@link RoomController#getFreeRooms(LocalDateTime, LocalDateTime)}
+     */
+    @Test
+    void testGetFreeRooms() throws Exception {
+        LocalDateTime from = LocalDateTime.of(2023, 4, 25, 10, 0);
+        LocalDateTime to = LocalDateTime.of(2023, 4, 25, 10, 45);
+
+        when(roomRepository.findAll(Sort.by("roomName"))).thenReturn(new ArrayList<>(Arrays.asList(createSampleRoom(), new Room("Sala 02"))));
+        when(roomOccupancy.findFreeRooms(Arrays.asList("Sala 01", "Sala 02"), from, to)).thenReturn(Arrays.asList("Sala 02"));
+
+        mockMvc.perform(get("/api/availability/free-rooms")
+                        .param("from", "10:00 25/04/2023")
+                        .param("to", "10:45 25/04/2023"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].roomName").value("Sala 02"));
+    }
+
 }
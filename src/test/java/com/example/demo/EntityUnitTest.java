@@ -164,15 +164,15 @@ class EntityUnitTest {
      */
     @Test
     void testOverlaps3() {
-        LocalDateTime startsAt = LocalDate.now().atStartOfDay();
-        LocalDateTime finishesAt = LocalDate.of(2023, 10, 16).atStartOfDay();
+        LocalDateTime startsAt = LocalDate.of(2023, 10, 16).atStartOfDay();
+        LocalDateTime finishesAt = LocalDate.of(2023, 10, 17).atStartOfDay();
 
         a1 = createAndPersistAppointment(p1, d1, r1, startsAt, finishesAt);
 
         Doctor doctor2 = createAndPersistDoctor("Doctor 2", "Apellidos", 30, "doctor2@gmail.com");
         Patient patient2 = createAndPersistPatient("Paciente 2", "Apellido 2", 25, "paciente2@gmail.com");
 
-        LocalDateTime startsAt2 = LocalDate.of(2023, 10, 16).atStartOfDay();
+        LocalDateTime startsAt2 = startsAt.plusHours(12);
         LocalDateTime finishesAt2 = finishesAt;
 
         a2 = createAndPersistAppointment(patient2, doctor2, r1, startsAt2, finishesAt2);
@@ -180,6 +180,34 @@ class EntityUnitTest {
         assertTrue(a1.overlaps(a2));
     }
 
+    /**
+     * Method under test: {@link Appointment#overlaps(Appointment)}
+     */
+    @Test
+    void testOverlapsWhenOneContainsTheOther() {
+        LocalDateTime nine = LocalDateTime.of(2023, 10, 16, 9, 0);
+
+        a1 = createAndPersistAppointment(p1, d1, r1, nine.plusMinutes(15), nine.plusMinutes(45));
+        a2 = createAndPersistAppointment(p1, d1, r1, nine, nine.plusHours(1));
+
+        assertTrue(a1.overlaps(a2));
+        assertTrue(a2.overlaps(a1));
+    }
+
+    /**
+     * Method under test: {@link Appointment#overlaps(Appointment)}
+     */
+    @Test
+    void testAdjacentAppointmentsDoNotOverlap() {
+        LocalDateTime nine = LocalDateTime.of(2023, 10, 16, 9, 0);
+
+        a1 = createAndPersistAppointment(p1, d1, r1, nine, nine.plusHours(1));
+        a2 = createAndPersistAppointment(p1, d1, r1, nine.plusHours(1), nine.plusHours(2));
+
+        assertFalse(a1.overlaps(a2));
+        assertFalse(a2.overlaps(a1));
+    }
+
 
     /**
      * Crea y persiste un objeto Doctor en la base de datos.
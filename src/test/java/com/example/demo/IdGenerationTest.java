@@ -0,0 +1,95 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+// a database of its own, so no other test has drawn ids from the sequences yet
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.datasource.url=jdbc:h2:mem:ids"
+})
+class IdGenerationTest {
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @AfterEach
+    void cleanup() {
+        appointmentRepository.deleteAllInBatch();
+        doctorRepository.deleteAllInBatch();
+        roomRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void shouldInsertInBatchesWithoutAnIdRoundTripPerRow() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        roomRepository.save(new Room("Dermatology"));
+        LocalDateTime day = LocalDateTime.of(2023, 4, 24, 0, 0);
+        statistics.clear();
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Room room = roomRepository.findByRoomName("Dermatology").get();
+            List<Appointment> appointments = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                appointments.add(new Appointment(null, null, room, day.plusMinutes(5L * i), day.plusMinutes(5L * i + 5)));
+            }
+            appointmentRepository.saveAll(appointments);
+        });
+
+        assertThat(appointmentRepository.count()).isEqualTo(200);
+        // four batched inserts and four id allocations, plus the room lookup
+        assertThat(statistics.getPrepareStatementCount()).isLessThan(20);
+    }
+
+    @Test
+    void shouldKeepExistingIdsWhenTheSequencesAreMoved() {
+        new JdbcTemplate(dataSource).update("insert into doctors (id, age, email, first_name, last_name) "
+                + "values (5000, 60, 'legacy@hospital.accwe', 'Legacy', 'Doctor')");
+
+        new ResourceDatabasePopulator(new ClassPathResource("db/id-sequences.sql")).execute(dataSource);
+        // a second run changes nothing
+        new ResourceDatabasePopulator(new ClassPathResource("db/id-sequences.sql")).execute(dataSource);
+
+        Doctor doctor = doctorRepository.save(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+
+        assertThat(doctor.getId()).isEqualTo(5001);
+        assertThat(doctorRepository.findById(5000L)).isPresent();
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.doAnswer;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+
+import com.example.demo.entities.*;
+import com.example.demo.repositories.AppointmentRepository;
+import com.example.demo.services.BookingResult;
+
+/**
+ * The concurrent booking tests again with the in-memory room index, which
+ * is then the only room conflict check: a booking the index has not seen
+ * yet would be double booked.
+ */
+@SpringBootTest(properties = "booking.index.enabled=true")
+class IndexedBookingConcurrencyTest extends AppointmentBookingConcurrencyTest {
+
+    @SpyBean
+    AppointmentRepository spiedAppointments;
+
+    @Test
+    void shouldUseTheIndex() {
+        assertThat(roomScheduleIndex).isNotNull();
+    }
+
+    @Test
+    void shouldKeepBookingsMadeDuringCancelAllInTheIndex() throws Exception {
+        LocalDateTime nine = LocalDateTime.of(2023, 4, 24, 9, 0);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        Future<?>[] booking = new Future<?>[1];
+
+        // a booking that arrives right after the delete, before the index is cleared
+        doAnswer(invocation -> {
+            // the proxied interface has no real method to call
+            spiedAppointments.deleteAllInBatch();
+            booking[0] = executor.submit(() -> bookingService.book(
+                    new Appointment(null, null, new Room("Dermatology"), nine, nine.plusHours(1))));
+            try {
+                booking[0].get(500, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // held back by the locks cancelAll holds
+            }
+            return null;
+        }).when(spiedAppointments).deleteAll();
+
+        bookingService.cancelAll();
+        BookingResult first = (BookingResult) booking[0].get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertThat(first.isAccepted()).isTrue();
+        assertThat(roomScheduleIndex.findConflicts(first.getAppointment().getRoom().getId(), nine, nine.plusHours(1)))
+                .containsExactly(first.getAppointment().getId());
+        assertThat(bookingService.book(new Appointment(null, null, new Room("Dermatology"),
+                nine.plusMinutes(30), nine.plusMinutes(90))).getStatus()).isEqualTo(BookingResult.Status.CONFLICT);
+    }
+}
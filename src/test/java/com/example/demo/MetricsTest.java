@@ -0,0 +1,77 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import com.example.demo.repositories.*;
+import com.example.demo.services.RoomOccupancy;
+
+@SpringBootTest(properties = {
+        "management.endpoints.web.exposure.include=prometheus",
+        "management.metrics.tags.application=techhub",
+        "management.metrics.distribution.percentiles-histogram.http.server.requests=true",
+        "management.metrics.distribution.percentiles-histogram.booking.conflict.check=true"})
+@AutoConfigureMockMvc
+@AutoConfigureMetrics
+class MetricsTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    RoomOccupancy roomOccupancy;
+
+    @AfterEach
+    void cleanup() {
+        appointmentRepository.deleteAllInBatch();
+        roomRepository.deleteAllInBatch();
+        roomOccupancy.clear();
+    }
+
+    @Test
+    void shouldPublishBookingAndRequestMetricsForPrometheus() throws Exception {
+        book("09:00", "10:00").andExpect(status().isCreated());
+        book("09:30", "10:30").andExpect(status().isNotAcceptable());
+        book("11:00", "10:00").andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/rooms/Dermatology")).andExpect(status().isOk());
+
+        String scrape = mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        assertThat(scrape)
+                .contains("booking_outcomes_total{application=\"techhub\",outcome=\"accepted\",reason=\"none\",source=\"booking\",} 1.0")
+                .contains("booking_outcomes_total{application=\"techhub\",outcome=\"conflict\",reason=\"room\",source=\"booking\",} 1.0")
+                .contains("booking_outcomes_total{application=\"techhub\",outcome=\"invalid\",reason=\"none\",source=\"booking\",} 1.0")
+                .contains("booking_conflict_check_seconds_bucket{application=\"techhub\",checked=\"room\",where=\"database\",")
+                .contains("booking_conflict_rows_sum{application=\"techhub\",checked=\"room\",where=\"database\",} 1.0")
+                .contains("booking_lock_wait_seconds_count")
+                .contains("http_server_requests_seconds_bucket{application=\"techhub\",exception=\"None\",method=\"POST\",outcome=\"SUCCESS\",status=\"201\",uri=\"/api/appointment\",")
+                .contains("spring_data_repository_invocations_seconds_count{application=\"techhub\",exception=\"None\",method=\"findOverlapping\",repository=\"AppointmentRepository\",state=\"SUCCESS\",}")
+                .contains("hikaricp_connections_active{application=\"techhub\",pool=")
+                .contains("cache_gets_total{application=\"techhub\",cache=\"rooms\",");
+    }
+
+    private ResultActions book(String startsAt, String finishesAt) throws Exception {
+        String body = "{\"room\":{\"roomName\":\"Dermatology\"},"
+                + "\"startsAt\":\"" + startsAt + " 24/04/2023\",\"finishesAt\":\"" + finishesAt + " 24/04/2023\"}";
+        return mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON).content(body));
+    }
+}
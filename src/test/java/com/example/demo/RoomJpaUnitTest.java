@@ -1,8 +1,12 @@
 package com.example.demo;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 import java.util.Optional;
+
+import javax.persistence.PersistenceException;
+
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
@@ -69,6 +73,19 @@ class RoomJpaUnitTest {
         assertThat(room).isEqualTo(room2);
     }
 
+    @Test
+    void should_give_rooms_numeric_ids_and_unique_names(){
+        Room room1 = entityManager.persist(new Room("Dermatology"));
+        Room room2 = entityManager.persist(new Room("Operations"));
+
+        assertThat(room1.getId()).isPositive();
+        assertThat(room2.getId()).isNotEqualTo(room1.getId());
+        assertThat(repository.findById(room2.getId())).contains(room2);
+
+        assertThatThrownBy(() -> entityManager.persistAndFlush(new Room("Dermatology")))
+                .isInstanceOf(PersistenceException.class);
+    }
+
     @Test
     void should_delete_room(){
         Room room1 = new Room("Dermatology");
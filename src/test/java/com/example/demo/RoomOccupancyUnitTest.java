@@ -0,0 +1,139 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.services.AvailabilityMatrix;
+import com.example.demo.services.RoomOccupancy;
+
+class RoomOccupancyUnitTest {
+
+    private RoomOccupancy occupancy;
+
+    private AppointmentRepository appointmentRepository;
+
+    private final LocalDate day = LocalDate.of(2023, 4, 24);
+    private final LocalDateTime midnight = day.atStartOfDay();
+
+    @BeforeEach
+    void setup() {
+        appointmentRepository = mock(AppointmentRepository.class);
+        occupancy = new RoomOccupancy();
+        ReflectionTestUtils.setField(occupancy, "appointmentRepository", appointmentRepository);
+        ReflectionTestUtils.setField(occupancy, "cacheDays", 2);
+    }
+
+    @Test
+    void shouldMaskRangesAcrossWordBoundaries() {
+        long[] bits = new long[23];
+        bits[1] = 1L;       // minute 64
+        bits[2] = 1L << 63; // minute 191
+
+        assertThat(RoomOccupancy.isFree(bits, 0, 64)).isTrue();
+        assertThat(RoomOccupancy.isFree(bits, 0, 65)).isFalse();
+        assertThat(RoomOccupancy.isFree(bits, 65, 191)).isTrue();
+        assertThat(RoomOccupancy.isFree(bits, 190, 192)).isFalse();
+        assertThat(RoomOccupancy.isFree(bits, 192, 1440)).isTrue();
+
+        bits[22] = 1L << 31; // minute 1439
+        assertThat(RoomOccupancy.isFree(bits, 1430, 1439)).isTrue();
+        assertThat(RoomOccupancy.isFree(bits, 1430, 1440)).isFalse();
+    }
+
+    @Test
+    void shouldBuildMatrixFromRunningAndStartingAppointments() {
+        when(appointmentRepository.findRoomRangesRunningAt(midnight)).thenReturn(Collections.singletonList(
+                new RoomTimeRange("Dermatology", midnight.minusHours(1), midnight.plusMinutes(30))));
+        when(appointmentRepository.findRoomRangesStartingBetween(midnight, midnight.plusDays(1))).thenReturn(Arrays.asList(
+                new RoomTimeRange("Oncology", midnight.plusMinutes(45), midnight.plusMinutes(50)),
+                new RoomTimeRange("Dermatology", midnight.plusHours(23).plusMinutes(30), midnight.plusDays(1).plusHours(1))));
+
+        AvailabilityMatrix matrix = occupancy.getAvailability(
+                Arrays.asList("Dermatology", "Oncology", "Radiology"), day, 0, 24 * 60, 30);
+
+        assertThat(matrix.getSlots()).hasSize(48);
+        assertThat(matrix.getRooms().get("Dermatology")[0]).isFalse();
+        assertThat(matrix.getRooms().get("Dermatology")[1]).isTrue();
+        assertThat(matrix.getRooms().get("Dermatology")[47]).isFalse();
+        assertThat(matrix.getRooms().get("Oncology")[0]).isTrue();
+        assertThat(matrix.getRooms().get("Oncology")[1]).isFalse();
+        assertThat(matrix.getRooms().get("Radiology")).containsOnly(true);
+    }
+
+    @Test
+    void shouldKeepCachedDaysUpToDate() {
+        Appointment appointment = new Appointment(null, null, new Room("Dermatology"),
+                midnight.plusHours(10), midnight.plusHours(10).plusMinutes(45));
+
+        assertThat(occupancy.findFreeRooms(Arrays.asList("Dermatology"), midnight.plusHours(10), midnight.plusHours(11)))
+                .containsExactly("Dermatology");
+
+        occupancy.add(appointment);
+        assertThat(occupancy.findFreeRooms(Arrays.asList("Dermatology"), midnight.plusHours(10), midnight.plusHours(11)))
+                .isEmpty();
+        assertThat(occupancy.findFreeRooms(Arrays.asList("Dermatology"), midnight.plusMinutes(645), midnight.plusHours(11)))
+                .containsExactly("Dermatology");
+
+        occupancy.remove(appointment);
+        assertThat(occupancy.findFreeRooms(Arrays.asList("Dermatology"), midnight.plusHours(10), midnight.plusHours(11)))
+                .containsExactly("Dermatology");
+
+        verify(appointmentRepository, times(1)).findRoomRangesStartingBetween(any(), any());
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedDays() {
+        occupancy.getDay(day);
+        occupancy.getDay(day.plusDays(1));
+        occupancy.getDay(day);
+        occupancy.getDay(day.plusDays(2));
+        occupancy.getDay(day);
+        occupancy.getDay(day.plusDays(1));
+
+        verify(appointmentRepository, times(1)).findRoomRangesRunningAt(midnight);
+        verify(appointmentRepository, times(2)).findRoomRangesRunningAt(midnight.plusDays(1));
+    }
+
+    @Test
+    void shouldReadEveryDayFromTheDatabaseInDatabaseLockMode() {
+        ReflectionTestUtils.setField(occupancy, "lockMode", "database");
+
+        occupancy.getDay(day);
+        occupancy.getDay(day);
+
+        verify(appointmentRepository, times(2)).findRoomRangesRunningAt(midnight);
+    }
+
+    @Test
+    void shouldRankFreeRoomsByTightestFit() {
+        // Dermatology is booked 09:00-10:00 and 11:00-12:00, Oncology 08:00-09:00, Radiology 10:00-11:00
+        when(appointmentRepository.findRoomRangesStartingBetween(midnight, midnight.plusDays(1))).thenReturn(Arrays.asList(
+                new RoomTimeRange("Dermatology", midnight.plusHours(9), midnight.plusHours(10)),
+                new RoomTimeRange("Dermatology", midnight.plusHours(11), midnight.plusHours(12)),
+                new RoomTimeRange("Oncology", midnight.plusHours(8), midnight.plusHours(9)),
+                new RoomTimeRange("Radiology", midnight.plusHours(10), midnight.plusHours(11))));
+
+        assertThat(occupancy.rankFreeRooms(Arrays.asList("Dermatology", "Oncology", "Radiology", "Surgery"),
+                midnight.plusHours(10), midnight.plusHours(11)))
+                .containsExactly("Dermatology", "Oncology", "Surgery");
+
+        assertThat(occupancy.rankFreeRooms(Arrays.asList("Dermatology", "Oncology", "Radiology", "Surgery"),
+                midnight.plusHours(9), midnight.plusHours(10)))
+                .containsExactly("Radiology", "Oncology", "Surgery");
+    }
+}
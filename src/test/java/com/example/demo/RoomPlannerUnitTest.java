@@ -0,0 +1,116 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.services.RoomPlanner;
+
+class RoomPlannerUnitTest {
+
+    @Test
+    void shouldUseAsManyRoomsAsTheDeepestOverlap() {
+        Random random = new Random(7);
+        int n = 2000;
+        long[] startsAt = new long[n];
+        long[] finishesAt = new long[n];
+        for (int i = 0; i < n; i++) {
+            startsAt[i] = random.nextInt(10_000);
+            finishesAt[i] = startsAt[i] + 1 + random.nextInt(200);
+        }
+
+        int[] assigned = new RoomPlanner(0).assign(startsAt, finishesAt);
+
+        assertThat(Arrays.stream(assigned).max().getAsInt() + 1).isEqualTo(maxOverlap(startsAt, finishesAt));
+        assertNoOverlapWithinRooms(assigned, startsAt, finishesAt);
+    }
+
+    @Test
+    void shouldPlanAroundReservedRanges() {
+        RoomPlanner planner = new RoomPlanner(2);
+        planner.reserve(0, 100, 200);
+        planner.reserve(1, 150, 160);
+
+        int[] assigned = planner.assign(
+                new long[] {0, 0, 90, 100, 160},
+                new long[] {100, 200, 120, 150, 300});
+
+        // ends right where room 0's reservation starts
+        assertThat(assigned[0]).isEqualTo(0);
+        // room 1 is free at 0 but reserved from 150, so a new room opens
+        assertThat(assigned[1]).isEqualTo(2);
+        // short enough for room 1 before its reservation
+        assertThat(assigned[2]).isEqualTo(1);
+        // room 0 is reserved from 100, room 1 busy until 120
+        assertThat(assigned[3]).isEqualTo(3);
+        // room 1 has been free the longest once its reservation ends
+        assertThat(assigned[4]).isEqualTo(1);
+    }
+
+    @Test
+    void shouldLeaveEmptyRangesUnassigned() {
+        int[] assigned = new RoomPlanner(1).assign(new long[] {10, 10, 30}, new long[] {20, 10, 20});
+
+        assertThat(assigned).containsExactly(0, RoomPlanner.UNASSIGNED, RoomPlanner.UNASSIGNED);
+    }
+
+    @Test
+    void shouldAssignOneHundredThousandRequestsQuickly() {
+        Random random = new Random(42);
+        int n = 100_000;
+        long[] startsAt = new long[n];
+        long[] finishesAt = new long[n];
+        for (int i = 0; i < n; i++) {
+            startsAt[i] = random.nextInt(24 * 60) * 60L;
+            finishesAt[i] = startsAt[i] + (15 + 15 * random.nextInt(4)) * 60L;
+        }
+        RoomPlanner planner = new RoomPlanner(50);
+        for (int room = 0; room < 50; room++) {
+            planner.reserve(room, room * 600L, room * 600L + 1800);
+        }
+
+        long started = System.nanoTime();
+        int[] assigned = planner.assign(startsAt, finishesAt);
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+        assertNoOverlapWithinRooms(assigned, startsAt, finishesAt);
+        assertThat(elapsedMillis).isLessThan(1000);
+    }
+
+    private static int maxOverlap(long[] startsAt, long[] finishesAt) {
+        long[] events = new long[2 * startsAt.length];
+        for (int i = 0; i < startsAt.length; i++) {
+            // ends sort before starts at the same time: ranges are half open
+            events[2 * i] = startsAt[i] * 2 + 1;
+            events[2 * i + 1] = finishesAt[i] * 2;
+        }
+        Arrays.sort(events);
+        int depth = 0;
+        int max = 0;
+        for (long event : events) {
+            depth += (event & 1) == 1 ? 1 : -1;
+            max = Math.max(max, depth);
+        }
+        return max;
+    }
+
+    private static void assertNoOverlapWithinRooms(int[] assigned, long[] startsAt, long[] finishesAt) {
+        Integer[] order = new Integer[assigned.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> assigned[a] != assigned[b]
+                ? Integer.compare(assigned[a], assigned[b])
+                : Long.compare(startsAt[a], startsAt[b]));
+        for (int k = 1; k < order.length; k++) {
+            int previous = order[k - 1];
+            int current = order[k];
+            if (assigned[previous] == assigned[current]) {
+                assertThat(startsAt[current]).isGreaterThanOrEqualTo(finishesAt[previous]);
+            }
+        }
+    }
+}
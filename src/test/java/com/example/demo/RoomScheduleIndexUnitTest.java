@@ -0,0 +1,124 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.entities.*;
+import com.example.demo.services.RoomScheduleIndex;
+
+class RoomScheduleIndexUnitTest {
+
+    private RoomScheduleIndex index;
+
+    private final Room room = new Room("Dermatology");
+    private final LocalDateTime day = LocalDateTime.of(2023, 4, 24, 0, 0);
+
+    @BeforeEach
+    void setup() {
+        index = new RoomScheduleIndex();
+        room.setId(1);
+    }
+
+    private Appointment appointment(long id, Room room, int fromMinute, int toMinute) {
+        Appointment appointment = new Appointment(null, null, room, day.plusMinutes(fromMinute), day.plusMinutes(toMinute));
+        appointment.setId(id);
+        return appointment;
+    }
+
+    @Test
+    void shouldFindNoConflictsInEmptyRoom() {
+        assertThat(index.findConflicts(1, day, day.plusHours(1))).isEmpty();
+    }
+
+    @Test
+    void shouldDetectEveryKindOfOverlap() {
+        index.add(appointment(1, room, 60, 120));
+
+        assertThat(index.hasConflict(appointment(0, room, 60, 120))).isTrue();
+        assertThat(index.hasConflict(appointment(0, room, 30, 90))).isTrue();
+        assertThat(index.hasConflict(appointment(0, room, 90, 150))).isTrue();
+        assertThat(index.hasConflict(appointment(0, room, 70, 80))).isTrue();
+        assertThat(index.hasConflict(appointment(0, room, 0, 600))).isTrue();
+    }
+
+    @Test
+    void shouldAllowAdjacentAppointments() {
+        index.add(appointment(1, room, 60, 120));
+
+        assertThat(index.hasConflict(appointment(0, room, 0, 60))).isFalse();
+        assertThat(index.hasConflict(appointment(0, room, 120, 180))).isFalse();
+    }
+
+    @Test
+    void shouldIgnoreOtherRooms() {
+        index.add(appointment(1, room, 60, 120));
+
+        Room oncology = new Room("Oncology");
+        oncology.setId(2);
+
+        assertThat(index.hasConflict(appointment(0, oncology, 60, 120))).isFalse();
+    }
+
+    @Test
+    void shouldFindLongAppointmentStartingWellBefore() {
+        index.add(appointment(1, room, 0, 600));
+        index.add(appointment(2, room, 700, 710));
+
+        assertThat(index.findConflicts(1, day.plusMinutes(500), day.plusMinutes(505))).containsExactly(1L);
+    }
+
+    @Test
+    void shouldForgetRemovedAppointments() {
+        Appointment appointment = appointment(1, room, 60, 120);
+        index.add(appointment);
+        index.remove(appointment);
+
+        assertThat(index.hasConflict(appointment(0, room, 60, 120))).isFalse();
+    }
+
+    @Test
+    void shouldForgetRemovedLongAppointment() {
+        Appointment longOne = appointment(1, room, 0, 6000);
+        index.add(longOne);
+        index.add(appointment(2, room, 700, 710));
+        index.remove(longOne);
+
+        assertThat(index.findConflicts(1, day.plusMinutes(500), day.plusMinutes(800))).containsExactly(2L);
+    }
+
+    @Test
+    void shouldMatchAFullScanAfterRandomAddsAndRemoves() {
+        Random random = new Random(42);
+        List<Appointment> booked = new ArrayList<>();
+        for (long id = 1; id <= 2000; id++) {
+            int from = random.nextInt(20000);
+            Appointment appointment = appointment(id, room, from, from + 1 + random.nextInt(random.nextInt(10) == 0 ? 2000 : 60));
+            index.add(appointment);
+            booked.add(appointment);
+            if (random.nextInt(3) == 0) {
+                index.remove(booked.remove(random.nextInt(booked.size())));
+            }
+        }
+
+        for (int i = 0; i < 500; i++) {
+            LocalDateTime startsAt = day.plusMinutes(random.nextInt(20000));
+            LocalDateTime finishesAt = startsAt.plusMinutes(1 + random.nextInt(120));
+            List<Long> expected = booked.stream()
+                    .filter(appointment -> appointment.getStartsAt().isBefore(finishesAt)
+                            && appointment.getFinishesAt().isAfter(startsAt))
+                    .map(Appointment::getId)
+                    .sorted()
+                    .collect(Collectors.toList());
+
+            assertThat(index.findConflicts(1, startsAt, finishesAt)).containsExactlyInAnyOrderElementsOf(expected);
+        }
+    }
+}
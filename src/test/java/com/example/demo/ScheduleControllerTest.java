@@ -0,0 +1,178 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+
+import javax.servlet.AsyncListener;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.services.AppointmentBookingService;
+import com.example.demo.services.CollectionVersions;
+import com.example.demo.services.RoomOccupancy;
+
+@SpringBootTest(properties = "api.etag.enabled=true")
+@AutoConfigureMockMvc
+class ScheduleControllerTest {
+
+    private static final LocalDateTime NINE = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    AppointmentBookingService appointmentBookingService;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    RoomOccupancy roomOccupancy;
+
+    @Autowired
+    CollectionVersions collectionVersions;
+
+    @BeforeEach
+    void setup() {
+        book(NINE);
+    }
+
+    @AfterEach
+    void cleanup() {
+        appointmentRepository.deleteAllInBatch();
+        roomRepository.deleteAllInBatch();
+        roomOccupancy.clear();
+    }
+
+    @Test
+    void shouldReturnTheScheduleWithAnEtag() throws Exception {
+        MvcResult poll = mockMvc.perform(schedule())
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(poll))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andExpect(jsonPath("$.length()").value(1))
+                .andExpect(jsonPath("$[0].room.roomName").value("Dermatology"));
+    }
+
+    @Test
+    void shouldHoldTheLongPollUntilTheScheduleChanges() throws Exception {
+        String etag = etag();
+
+        MvcResult poll = mockMvc.perform(schedule().param("wait", "30").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        assertThatThrownBy(() -> poll.getAsyncResult(300)).isInstanceOf(IllegalStateException.class);
+
+        book(NINE.plusHours(1));
+
+        mockMvc.perform(asyncDispatch(poll))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+        assertThat(poll.getResponse().getHeader(HttpHeaders.ETAG)).isNotEqualTo(etag);
+    }
+
+    @Test
+    void shouldAnswerNotModifiedWhenNothingChangesInTime() throws Exception {
+        String etag = etag();
+
+        mockMvc.perform(asyncDispatch(mockMvc.perform(schedule().header(HttpHeaders.IF_NONE_MATCH, etag)).andReturn()))
+                .andExpect(status().isNotModified());
+
+        MvcResult poll = mockMvc.perform(schedule().param("wait", "1").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        // MockMvc never times async requests out by itself
+        for (AsyncListener listener : ((MockAsyncContext) poll.getRequest().getAsyncContext()).getListeners()) {
+            listener.onTimeout(null);
+        }
+        mockMvc.perform(asyncDispatch(poll))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+
+        assertThat(collectionVersions.getWaiting(CollectionVersions.Collection.APPOINTMENTS)).isZero();
+    }
+
+    @Test
+    void shouldNotFindTheScheduleOfAnUnknownRoom() throws Exception {
+        MvcResult poll = mockMvc.perform(get("/api/rooms/Oncology/schedule"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(poll))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    void shouldStreamAnEventPerChange() throws Exception {
+        MvcResult stream = mockMvc.perform(get("/api/appointments/changes"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitEvents(stream, 1);
+
+        book(NINE.plusHours(1));
+
+        awaitEvents(stream, 2);
+    }
+
+    @Test
+    void shouldStopWaitingWhenTheStreamCloses() throws Exception {
+        MvcResult stream = mockMvc.perform(get("/api/appointments/changes"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        awaitEvents(stream, 1);
+        assertThat(collectionVersions.getWaiting(CollectionVersions.Collection.APPOINTMENTS)).isEqualTo(1);
+
+        for (AsyncListener listener : ((MockAsyncContext) stream.getRequest().getAsyncContext()).getListeners()) {
+            listener.onComplete(null);
+        }
+
+        assertThat(collectionVersions.getWaiting(CollectionVersions.Collection.APPOINTMENTS)).isZero();
+    }
+
+    private MockHttpServletRequestBuilder schedule() {
+        return get("/api/rooms/Dermatology/schedule").param("from", "00:00 24/04/2023");
+    }
+
+    private String etag() throws Exception {
+        MvcResult poll = mockMvc.perform(schedule()).andReturn();
+        return mockMvc.perform(asyncDispatch(poll)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+    }
+
+    private void book(LocalDateTime startsAt) {
+        appointmentBookingService.book(new Appointment(null, null, new Room("Dermatology"), startsAt, startsAt.plusHours(1)));
+    }
+
+    private void awaitEvents(MvcResult stream, int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (events(stream) < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(events(stream)).isEqualTo(count);
+    }
+
+    private int events(MvcResult stream) throws Exception {
+        return stream.getResponse().getContentAsString().split("event:appointments", -1).length - 1;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.services.RoomOccupancy;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class SchedulePlanTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    RoomOccupancy roomOccupancy;
+
+    @BeforeEach
+    void seed() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            Room dermatology = roomRepository.save(new Room("Dermatology"));
+            roomRepository.save(new Room("Oncology"));
+            appointmentRepository.save(new Appointment(null, null, dermatology,
+                    LocalDateTime.of(2023, 4, 24, 10, 0), LocalDateTime.of(2023, 4, 24, 11, 0)));
+        });
+        roomOccupancy.clear();
+    }
+
+    @AfterEach
+    void cleanup() {
+        appointmentRepository.deleteAllInBatch();
+        patientRepository.deleteAllInBatch();
+        doctorRepository.deleteAllInBatch();
+        roomRepository.deleteAllInBatch();
+        roomOccupancy.clear();
+    }
+
+    @Test
+    void shouldProposeRoomsAroundExistingAppointments() throws Exception {
+        String body = "["
+                + item("09:00", "10:00") + ","
+                + item("09:30", "10:30") + ","
+                + item("10:00", "11:00") + ","
+                + item("11:00", "10:00")
+                + "]";
+
+        mockMvc.perform(post("/api/appointments/plan").contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.roomsUsed").value(3))
+                .andExpect(jsonPath("$.newRooms").value(1))
+                .andExpect(jsonPath("$.items[0].roomName").value("Dermatology"))
+                .andExpect(jsonPath("$.items[1].roomName").value("Oncology"))
+                .andExpect(jsonPath("$.items[2].status").value("NEW_ROOM"))
+                .andExpect(jsonPath("$.items[2].newRoom").value(1))
+                .andExpect(jsonPath("$.items[3].status").value("INVALID"))
+                .andExpect(jsonPath("$.committed").doesNotExist());
+
+        assertThat(appointmentRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotCommitAPlanThatNeedsNewRooms() throws Exception {
+        String body = "[" + item("10:00", "11:00") + "," + item("10:30", "11:30") + "]";
+
+        mockMvc.perform(post("/api/appointments/plan").param("commit", "true")
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isNotAcceptable())
+                .andExpect(jsonPath("$.newRooms").value(1))
+                .andExpect(jsonPath("$.committed").doesNotExist());
+
+        assertThat(appointmentRepository.count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldCommitThePlanInOneBatch() throws Exception {
+        String body = "[" + item("09:00", "10:00") + "," + item("09:30", "10:30") + "," + item("11:00", "12:00") + "]";
+
+        mockMvc.perform(post("/api/appointments/plan").param("commit", "true")
+                        .contentType(MediaType.APPLICATION_JSON).content(body))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.roomsUsed").value(2))
+                .andExpect(jsonPath("$.committed.accepted").value(3))
+                .andExpect(jsonPath("$.committed.items[2].id").isNumber());
+
+        assertThat(appointmentRepository.count()).isEqualTo(4);
+        assertThat(appointmentRepository.findOverlapping(roomRepository.findByRoomName("Dermatology").get().getId(),
+                LocalDateTime.of(2023, 4, 24, 9, 0), LocalDateTime.of(2023, 4, 24, 12, 0))).hasSize(3);
+    }
+
+    private String item(String startsAt, String finishesAt) {
+        return "{\"startsAt\":\"" + startsAt + " 24/04/2023\","
+                + "\"finishesAt\":\"" + finishesAt + " 24/04/2023\"}";
+    }
+}
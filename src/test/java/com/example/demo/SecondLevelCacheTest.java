@@ -0,0 +1,149 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@AutoConfigureMockMvc
+class SecondLevelCacheTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setup() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @AfterEach
+    void cleanup() {
+        appointmentRepository.deleteAllInBatch();
+        patientRepository.deleteAllInBatch();
+        doctorRepository.deleteAllInBatch();
+        roomRepository.deleteAllInBatch();
+    }
+
+    @Test
+    void shouldServeRepeatedRoomLookupsFromTheCache() throws Exception {
+        long roomId = roomRepository.save(new Room("Dermatology")).getId();
+        statistics.clear();
+
+        assertThat(roomRepository.findById(roomId)).isPresent();
+        assertThat(roomRepository.findById(roomId)).isPresent();
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(cacheHits("rooms")).isPositive();
+    }
+
+    @Test
+    void shouldFindRoomsCreatedByAnotherInstance() {
+        assertThat(roomRepository.findByRoomName("Dermatology")).isEmpty();
+
+        // written around this instance's session factory, as another node would
+        jdbcTemplate.update("insert into room (id, room_name) values (?, ?)", 1_000_000L, "Dermatology");
+
+        assertThat(roomRepository.findByRoomName("Dermatology")).isPresent();
+    }
+
+    @Test
+    void shouldServeRepeatedDoctorAndPatientLookupsFromTheCache() {
+        long doctorId = doctorRepository.save(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe")).getId();
+        long patientId = patientRepository.save(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com")).getId();
+        statistics.clear();
+
+        assertThat(doctorRepository.findById(doctorId)).isPresent();
+        assertThat(doctorRepository.findById(doctorId)).isPresent();
+        assertThat(patientRepository.findById(patientId)).isPresent();
+        assertThat(patientRepository.findById(patientId)).isPresent();
+
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertThat(statistics.getSecondLevelCacheHitCount()).isEqualTo(4);
+    }
+
+    @Test
+    void shouldEvictDeletedRooms() throws Exception {
+        roomRepository.save(new Room("Dermatology"));
+        assertThat(roomRepository.findByRoomName("Dermatology")).isPresent();
+
+        mockMvc.perform(delete("/api/rooms/Dermatology")).andExpect(status().isOk());
+
+        assertThat(roomRepository.findByRoomName("Dermatology")).isEmpty();
+        mockMvc.perform(get("/api/rooms/Dermatology")).andExpect(status().isNotFound());
+
+        roomRepository.save(new Room("Oncology"));
+        assertThat(roomRepository.findByRoomName("Oncology")).isPresent();
+
+        mockMvc.perform(delete("/api/rooms")).andExpect(status().isOk());
+
+        assertThat(roomRepository.findByRoomName("Oncology")).isEmpty();
+    }
+
+    @Test
+    void shouldEvictDeletedDoctorsAndPatients() throws Exception {
+        long doctorId = doctorRepository.save(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe")).getId();
+        long patientId = patientRepository.save(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com")).getId();
+        assertThat(doctorRepository.findById(doctorId)).isPresent();
+        assertThat(patientRepository.findById(patientId)).isPresent();
+
+        mockMvc.perform(delete("/api/doctors/" + doctorId)).andExpect(status().isOk());
+        mockMvc.perform(delete("/api/patients/" + patientId)).andExpect(status().isOk());
+
+        assertThat(doctorRepository.findById(doctorId)).isEmpty();
+        assertThat(patientRepository.findById(patientId)).isEmpty();
+        mockMvc.perform(get("/api/doctors/" + doctorId)).andExpect(status().isNotFound());
+        mockMvc.perform(get("/api/patients/" + patientId)).andExpect(status().isNotFound());
+    }
+
+    /**
+     * @return hits of the region across every cache manager in the JVM
+     */
+    private long cacheHits(String region) throws Exception {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        long hits = 0;
+        for (ObjectName name : server.queryNames(new ObjectName("javax.cache:type=CacheStatistics,Cache=" + region + ",*"), null)) {
+            hits += (Long) server.getAttribute(name, "CacheHits");
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import com.example.demo.repositories.*;
+import com.example.demo.services.RoomOccupancy;
+
+@SpringBootTest(properties = {
+        "api.server-timing.enabled=true",
+        "api.server-timing.token=" + ServerTimingTest.TOKEN})
+@AutoConfigureMockMvc
+class ServerTimingTest {
+
+    static final String TOKEN = "s3cret";
+
+    private static final Pattern BREAKDOWN = Pattern.compile(
+            "deserialize;dur=[\\d.]+, conflict;dur=[\\d.]+, db;dur=[\\d.]+;desc=\"(\\d+) statements\", serialize;dur=[\\d.]+, total;dur=[\\d.]+");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    ServerTimingFilter serverTimingFilter;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    RoomOccupancy roomOccupancy;
+
+    @AfterEach
+    void cleanup() {
+        ReflectionTestUtils.setField(serverTimingFilter, "token", TOKEN);
+        appointmentRepository.deleteAllInBatch();
+        roomRepository.deleteAllInBatch();
+        roomOccupancy.clear();
+    }
+
+    @Test
+    void shouldBreakDownTimedRequests() throws Exception {
+        mockMvc.perform(book("09:00", "10:00").header(ServerTimingFilter.REQUEST_HEADER, TOKEN))
+                .andExpect(status().isCreated());
+
+        MvcResult conflict = mockMvc.perform(book("09:30", "10:30").header(ServerTimingFilter.REQUEST_HEADER, TOKEN))
+                .andExpect(status().isNotAcceptable())
+                .andExpect(jsonPath("$[0].room.roomName").value("Dermatology"))
+                .andReturn();
+
+        Matcher breakdown = BREAKDOWN.matcher(conflict.getResponse().getHeader("Server-Timing"));
+        assertThat(breakdown.matches()).isTrue();
+        assertThat(Integer.parseInt(breakdown.group(1))).isPositive();
+    }
+
+    @Test
+    void shouldLeaveOtherRequestsAlone() throws Exception {
+        mockMvc.perform(book("09:00", "10:00"))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist("Server-Timing"));
+    }
+
+    @Test
+    void shouldOnlyTimeRequestsWithTheToken() throws Exception {
+        mockMvc.perform(get("/api/rooms").header(ServerTimingFilter.REQUEST_HEADER, "1"))
+                .andExpect(header().doesNotExist("Server-Timing"));
+        mockMvc.perform(get("/api/rooms").header(ServerTimingFilter.REQUEST_HEADER, TOKEN))
+                .andExpect(header().exists("Server-Timing"));
+    }
+
+    @Test
+    void shouldTimeNothingWithoutAToken() throws Exception {
+        ReflectionTestUtils.setField(serverTimingFilter, "token", "");
+
+        mockMvc.perform(get("/api/rooms").header(ServerTimingFilter.REQUEST_HEADER, ""))
+                .andExpect(header().doesNotExist("Server-Timing"));
+    }
+
+    @Test
+    void shouldStillAnswerAsyncRequests() throws Exception {
+        mockMvc.perform(book("09:00", "10:00")).andExpect(status().isCreated());
+
+        MvcResult poll = mockMvc.perform(get("/api/rooms/Dermatology/schedule").param("from", "00:00 24/04/2023")
+                        .header(ServerTimingFilter.REQUEST_HEADER, TOKEN))
+                .andExpect(request().asyncStarted())
+                .andExpect(header().exists("Server-Timing"))
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(poll))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(1));
+    }
+
+    private MockHttpServletRequestBuilder book(String startsAt, String finishesAt) {
+        String body = "{\"room\":{\"roomName\":\"Dermatology\"},"
+                + "\"startsAt\":\"" + startsAt + " 24/04/2023\",\"finishesAt\":\"" + finishesAt + " 24/04/2023\"}";
+        return post("/api/appointment").contentType(MediaType.APPLICATION_JSON).content(body);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.ExecutorService;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.web.embedded.tomcat.TomcatWebServer;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.http.HttpStatus;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "spring.threads.virtual.enabled=true")
+class VirtualThreadConfigurationTest {
+
+    private static final boolean HAS_VIRTUAL_THREADS =
+            Double.parseDouble(System.getProperty("java.specification.version")) >= 21;
+
+    @Autowired
+    TestRestTemplate restTemplate;
+
+    @Autowired
+    ServletWebServerApplicationContext context;
+
+    @Test
+    void shouldCreateVirtualThreadsOnlyWhereTheRuntimeHasThem() {
+        ExecutorService executor = VirtualThreadConfiguration.newVirtualThreadPerTaskExecutor();
+
+        assertThat(executor != null).isEqualTo(HAS_VIRTUAL_THREADS);
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void shouldServeRequestsWithTheSettingOn() {
+        Object executor = ((TomcatWebServer) context.getWebServer()).getTomcat().getConnector()
+                .getProtocolHandler().getExecutor();
+
+        assertThat(executor.getClass().getName().contains("ThreadPerTask")).isEqualTo(HAS_VIRTUAL_THREADS);
+        assertThat(restTemplate.getForEntity("/api/rooms", String.class).getStatusCode())
+                .isIn(HttpStatus.OK, HttpStatus.NO_CONTENT);
+    }
+
+}